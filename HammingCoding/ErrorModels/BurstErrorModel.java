@@ -1,6 +1,6 @@
 package HammingCoding.ErrorModels;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Created by bnjhope on 20/10/16.
@@ -10,7 +10,7 @@ public class BurstErrorModel implements ITransmissionError {
     /**
      * The generator of the random numbers.
      */
-    private Random randomGen;
+    private SplittableRandom randomGen;
 
     /**
      * The current state of the error model. If it is true, then it is in a good state.
@@ -34,14 +34,25 @@ public class BurstErrorModel implements ITransmissionError {
     private double pOfError;
 
 
-    public BurstErrorModel(double pOfError,double pOfGoodToBad, double pOfBadToGood) {
+    public BurstErrorModel(double pOfError, double pOfGoodToBad, double pOfBadToGood) {
+        this(pOfError, pOfGoodToBad, pOfBadToGood, new SplittableRandom());
+    }
+
+    /**
+     * Makes an error model which draws its random numbers from the given generator, so that the errors
+     * it gives can be reproduced from the seed of the generator.
+     * @param pOfError The probability that a bit is flipped while the error model is in a bad state.
+     * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
+     * @param pOfBadToGood The probability that while being in a bad state that the model flips into a good state.
+     * @param randomGen The generator of the random numbers, which must not be used by anything else.
+     */
+    public BurstErrorModel(double pOfError, double pOfGoodToBad, double pOfBadToGood, SplittableRandom randomGen) {
         this.pOfError = pOfError;
         this.pOfGoodToBad = pOfGoodToBad;
         this.pOfBadToGood = pOfBadToGood;
 
-        //makes a new instance of a random number generator for the random number
-        //generator of this model
-        this.randomGen = new Random();
+        //the random number generator of this model
+        this.randomGen = randomGen;
     }
 
     /**
@@ -87,4 +98,81 @@ public class BurstErrorModel implements ITransmissionError {
         }
         return result;
     }
+
+    /**
+     * Simulates the errors for a run of bits in one go. This draws exactly the same random numbers in the same
+     * order as calling flip() for every bit, but keeps the state in local variables and builds each long of the
+     * mask before writing it.
+     * @param mask The array to write the mask into.
+     * @param numberOfBits The number of bits to simulate.
+     */
+    @Override
+    public void fillErrorMask(long[] mask, int numberOfBits) {
+
+        //local copies of the model, written back once the mask is filled
+        boolean good = this.goodState;
+        SplittableRandom random = this.randomGen;
+
+        for(int word = 0; word << 6 < numberOfBits; word++) {
+
+            //the mask for the next 64 bits and the number of them that are in the run
+            long bits = 0L;
+            int count = Math.min(64, numberOfBits - (word << 6));
+
+            for(int i = 0; i < count; i++) {
+
+                double stateVal = random.nextDouble();
+
+                if(good) {
+                    if(stateVal <= this.pOfGoodToBad)
+                        good = false;
+                } else {
+                    if(random.nextDouble() <= this.pOfError)
+                        bits |= 1L << i;
+                    if(stateVal <= this.pOfBadToGood)
+                        good = true;
+                }
+            }
+
+            mask[word] = bits;
+        }
+
+        this.goodState = good;
+    }
+
+    /**
+     * Simulates the errors for a run of bits in one go as the positions of the flipped bits, drawing exactly
+     * the same random numbers in the same order as calling flip() for every bit.
+     * @param positions The array to write the positions into.
+     * @param numberOfBits The number of bits to simulate.
+     * @return The number of positions written.
+     */
+    @Override
+    public int fillErrorPositions(int[] positions, int numberOfBits) {
+
+        //local copies of the model, written back once the positions are filled
+        boolean good = this.goodState;
+        SplittableRandom random = this.randomGen;
+
+        int count = 0;
+
+        for(int i = 0; i < numberOfBits; i++) {
+
+            double stateVal = random.nextDouble();
+
+            if(good) {
+                if(stateVal <= this.pOfGoodToBad)
+                    good = false;
+            } else {
+                if(random.nextDouble() <= this.pOfError)
+                    positions[count++] = i;
+                if(stateVal <= this.pOfBadToGood)
+                    good = true;
+            }
+        }
+
+        this.goodState = good;
+
+        return count;
+    }
 }
@@ -0,0 +1,74 @@
+package HammingCoding.ErrorModels;
+
+import java.util.SplittableRandom;
+
+/**
+ * The error models that transmissions can be simulated with, each selected on the command line by its name.
+ */
+public enum ErrorModelType {
+
+    /**
+     * The burst error model, which draws random numbers for every bit.
+     */
+    BURST("burst"),
+
+    /**
+     * The burst error model with the lengths of its runs drawn geometrically, so that error free stretches are skipped.
+     */
+    GEOMETRIC("geometric");
+
+    /**
+     * The name of the error model on the command line.
+     */
+    private final String name;
+
+    ErrorModelType(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Makes a new error model of this type.
+     * @param pOfError The probability that a bit is flipped while the error model is in a bad state.
+     * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
+     * @param pOfBadToGood The probability that while being in a bad state that the model flips into a good state.
+     * @return The new error model.
+     */
+    public ITransmissionError create(double pOfError, double pOfGoodToBad, double pOfBadToGood) {
+        return this.create(pOfError, pOfGoodToBad, pOfBadToGood, new SplittableRandom());
+    }
+
+    /**
+     * Makes a new error model of this type which draws its random numbers from the given generator.
+     * @param pOfError The probability that a bit is flipped while the error model is in a bad state.
+     * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
+     * @param pOfBadToGood The probability that while being in a bad state that the model flips into a good state.
+     * @param randomGen The generator of the random numbers, which must not be used by anything else.
+     * @return The new error model.
+     */
+    public ITransmissionError create(double pOfError, double pOfGoodToBad, double pOfBadToGood, SplittableRandom randomGen) {
+
+        if(this == GEOMETRIC)
+            return new GeometricBurstErrorModel(pOfError, pOfGoodToBad, pOfBadToGood, randomGen);
+
+        return new BurstErrorModel(pOfError, pOfGoodToBad, pOfBadToGood, randomGen);
+    }
+
+    /**
+     * Finds the error model with the given command line name.
+     * @param name The name of the error model.
+     * @return The error model type with that name.
+     */
+    public static ErrorModelType fromName(String name) {
+
+        for(ErrorModelType type : values()) {
+            if(type.name.equals(name))
+                return type;
+        }
+
+        throw new IllegalArgumentException("Unknown error model : " + name);
+    }
+}
@@ -0,0 +1,231 @@
+package HammingCoding.ErrorModels;
+
+import java.util.SplittableRandom;
+
+/**
+ * Gives the same errors as the burst error model, but instead of drawing random numbers for every bit it
+ * draws how long the model stays in each state and how many bits there are between flips while it is in
+ * the bad state. In a two state Markov chain both of these are geometrically distributed, so the model
+ * can jump over whole stretches of bits without errors using a handful of random numbers.
+ */
+public class GeometricBurstErrorModel implements ITransmissionError {
+
+    /**
+     * The generator of the random numbers.
+     */
+    private SplittableRandom randomGen;
+
+    /**
+     * The current state of the error model. If it is true, then it is in a good state.
+     * If it is false, then it is in a bad state, where a bit may be flipped.
+     */
+    private boolean goodState = true;
+
+    /**
+     * The probability that the burst model will go from a good state to a bad state
+     */
+    private double pOfGoodToBad;
+
+    /**
+     * The probability that the burst model will go from a bad state to a good state
+     */
+    private double pOfBadToGood;
+
+    /**
+     * The probability for when the burst model is in its bad state that a bit will be flipped.
+     */
+    private double pOfError;
+
+    /**
+     * The number of bits left before the model leaves its current state, including the current bit.
+     */
+    private long bitsLeftInState;
+
+    /**
+     * While in the bad state, the number of bits until the next flipped bit, counting the flipped bit itself.
+     */
+    private long bitsUntilError;
+
+    public GeometricBurstErrorModel(double pOfError, double pOfGoodToBad, double pOfBadToGood) {
+        this(pOfError, pOfGoodToBad, pOfBadToGood, new SplittableRandom());
+    }
+
+    /**
+     * Makes an error model which draws its random numbers from the given generator, so that the errors
+     * it gives can be reproduced from the seed of the generator.
+     * @param pOfError The probability that a bit is flipped while the error model is in a bad state.
+     * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
+     * @param pOfBadToGood The probability that while being in a bad state that the model flips into a good state.
+     * @param randomGen The generator of the random numbers, which must not be used by anything else.
+     */
+    public GeometricBurstErrorModel(double pOfError, double pOfGoodToBad, double pOfBadToGood, SplittableRandom randomGen) {
+        this.pOfError = pOfError;
+        this.pOfGoodToBad = pOfGoodToBad;
+        this.pOfBadToGood = pOfBadToGood;
+
+        //the random number generator of this model
+        this.randomGen = randomGen;
+
+        //the model starts in the good state
+        this.bitsLeftInState = this.sampleGeometric(this.pOfGoodToBad);
+    }
+
+    /**
+     * Determines whether or not a bit should be flipped, using the run lengths drawn so far.
+     * @return True if a bit should be flipped, false if not.
+     */
+    public boolean flip() {
+
+        //the result to be returned
+        boolean result = false;
+
+        //in the bad state, the bit is flipped when the count down to the next error reaches it
+        if(!this.goodState && --this.bitsUntilError == 0) {
+            result = true;
+            this.bitsUntilError = this.sampleGeometric(this.pOfError);
+        }
+
+        //the state changes after the last bit of its run
+        if(--this.bitsLeftInState == 0)
+            this.changeState();
+
+        return result;
+    }
+
+    /**
+     * Moves the model forward to its next flipped bit, skipping whole runs of the good state and the gaps
+     * between errors in the bad state.
+     * @param limit The most bits to move forward by.
+     * @return The number of bits that are not flipped before the next flipped bit, after which the model is
+     *         positioned just past the flipped bit; or the limit if no bit within it is flipped, after which
+     *         the model is positioned past all of those bits.
+     */
+    public long skipToNextFlip(long limit) {
+
+        //the number of bits that have been moved past without a flip
+        long skipped = 0;
+
+        while(skipped < limit) {
+
+            //the number of bits remaining before the limit is reached
+            long remaining = limit - skipped;
+
+            if(this.goodState) {
+
+                //no bit can be flipped in the good state, so skip the whole run if it fits
+                if(this.bitsLeftInState > remaining) {
+                    this.bitsLeftInState -= remaining;
+                    return limit;
+                }
+
+                skipped += this.bitsLeftInState;
+                this.changeState();
+
+            } else if(this.bitsUntilError <= this.bitsLeftInState && this.bitsUntilError <= remaining) {
+
+                //the next flip lies inside this bad run and within the limit
+                skipped += this.bitsUntilError - 1;
+                this.bitsLeftInState -= this.bitsUntilError;
+                this.bitsUntilError = this.sampleGeometric(this.pOfError);
+
+                if(this.bitsLeftInState == 0)
+                    this.changeState();
+
+                return skipped;
+
+            } else if(this.bitsLeftInState > remaining) {
+
+                //the limit is reached before the bad run ends or the next flip happens
+                this.bitsLeftInState -= remaining;
+                this.bitsUntilError -= remaining;
+                return limit;
+
+            } else {
+
+                //the bad run ends before the next flip
+                skipped += this.bitsLeftInState;
+                this.changeState();
+            }
+        }
+
+        return limit;
+    }
+
+    /**
+     * Simulates the errors for a run of bits in one go by skipping from one flipped bit to the next, so the
+     * work done depends on the number of errors rather than the number of bits.
+     * @param mask The array to write the mask into.
+     * @param numberOfBits The number of bits to simulate.
+     */
+    @Override
+    public void fillErrorMask(long[] mask, int numberOfBits) {
+
+        for(int word = 0; word << 6 < numberOfBits; word++)
+            mask[word] = 0L;
+
+        //the index of the next bit to simulate
+        long position = this.skipToNextFlip(numberOfBits);
+
+        while(position < numberOfBits) {
+            mask[(int) (position >>> 6)] |= 1L << position;
+            position += 1 + this.skipToNextFlip(numberOfBits - position - 1);
+        }
+    }
+
+    /**
+     * Simulates the errors for a run of bits in one go by skipping from one flipped bit to the next, giving
+     * the same errors as filling a mask would.
+     * @param positions The array to write the positions into.
+     * @param numberOfBits The number of bits to simulate.
+     * @return The number of positions written.
+     */
+    @Override
+    public int fillErrorPositions(int[] positions, int numberOfBits) {
+
+        int count = 0;
+
+        //the index of the next bit to simulate
+        long position = this.skipToNextFlip(numberOfBits);
+
+        while(position < numberOfBits) {
+            positions[count++] = (int) position;
+            position += 1 + this.skipToNextFlip(numberOfBits - position - 1);
+        }
+
+        return count;
+    }
+
+    /**
+     * Switches between the good and bad states and draws the length of the new run.
+     */
+    private void changeState() {
+
+        this.goodState = !this.goodState;
+
+        if(this.goodState) {
+            this.bitsLeftInState = this.sampleGeometric(this.pOfGoodToBad);
+        } else {
+            this.bitsLeftInState = this.sampleGeometric(this.pOfBadToGood);
+            this.bitsUntilError = this.sampleGeometric(this.pOfError);
+        }
+    }
+
+    /**
+     * Draws the number of trials up to and including the first success, where each trial succeeds with the
+     * given probability.
+     * @param p The probability of success on each trial.
+     * @return A number of at least 1, or Long.MAX_VALUE if the probability is 0.
+     */
+    private long sampleGeometric(double p) {
+
+        if(p >= 1.0)
+            return 1;
+        if(p <= 0.0)
+            return Long.MAX_VALUE;
+
+        //1 - nextDouble() lies in (0, 1], so the log is never infinite
+        double trials = Math.floor(Math.log(1.0 - this.randomGen.nextDouble()) / Math.log1p(-p));
+
+        return trials >= Long.MAX_VALUE - 1 ? Long.MAX_VALUE : (long) trials + 1;
+    }
+}
@@ -10,4 +10,48 @@ public interface ITransmissionError {
      * @return True if a bit should be flipped according to the model, false if not.
      */
     public boolean flip();
+
+    /**
+     * Simulates the errors for a run of bits in one go, as a packed mask with a bit set for every bit that
+     * should be flipped. Applying the errors to a packed transmission is then one XOR per 64 bits.
+     * By default this asks flip() about every bit, so models only need to override it if they can do better.
+     * @param mask The array to write the mask into, holding at least the given number of bits. Every long
+     *             holding part of the run is overwritten.
+     * @param numberOfBits The number of bits to simulate.
+     */
+    public default void fillErrorMask(long[] mask, int numberOfBits) {
+
+        for(int word = 0; word << 6 < numberOfBits; word++) {
+
+            //the mask for the next 64 bits, built up before being written
+            long bits = 0L;
+
+            for(int i = 0; i < 64 && (word << 6) + i < numberOfBits; i++) {
+                if(this.flip())
+                    bits |= 1L << i;
+            }
+
+            mask[word] = bits;
+        }
+    }
+
+    /**
+     * Simulates the errors for a run of bits in one go, as the sorted positions of the bits that should be
+     * flipped. When errors are rare this is far smaller than a mask, and only the flipped bits need any work.
+     * By default this asks flip() about every bit, so models only need to override it if they can do better.
+     * @param positions The array to write the positions into, which must have room for every bit of the run.
+     * @param numberOfBits The number of bits to simulate.
+     * @return The number of positions written.
+     */
+    public default int fillErrorPositions(int[] positions, int numberOfBits) {
+
+        int count = 0;
+
+        for(int i = 0; i < numberOfBits; i++) {
+            if(this.flip())
+                positions[count++] = i;
+        }
+
+        return count;
+    }
 }
@@ -0,0 +1,243 @@
+package HammingCoding.ErrorModels;
+
+import java.util.SplittableRandom;
+
+/**
+ * The burst error model simulated with importance sampling, for estimating success rates so close to 100% that
+ * plain simulation almost never sees a decoding failure. Bits are drawn from a biased copy of the burst model,
+ * which goes into the bad state more often, and the likelihood ratio of every run of bits
+ * is kept: the probability of its draws under the real model over their probability under the biased one.
+ * Weighting the errors of each run by its ratio gives an unbiased estimate of the errors under the real model.
+ *
+ * Each run starts in a state drawn from the stationary distribution of the biased model, with the ratio of that
+ * draw under the stationary distribution of the real model kept alongside the ratio of its bits, so that runs can
+ * be weighted independently. Starting in the bad state is as rare as entering it, so it is biased in the same way.
+ * The estimate is therefore of the long run success rate, rather than of a transmission that starts in the good state.
+ */
+public class ImportanceSamplingErrorModel implements ITransmissionError {
+
+    /**
+     * The generator of the random numbers.
+     */
+    private SplittableRandom randomGen;
+
+    /**
+     * The current state of the error model. If it is true, then it is in a good state.
+     * If it is false, then it is in a bad state, where a bit may be flipped.
+     */
+    private boolean goodState = true;
+
+    /**
+     * The probability of a run of the biased model starting in the bad state.
+     */
+    private double qOfBadStart;
+
+    /**
+     * The probabilities the biased model draws with.
+     */
+    private double qOfError, qOfGoodToBad, qOfBadToGood;
+
+    /**
+     * The log of the ratio between the real and biased probability of each outcome of a draw: staying in the good
+     * state, going to the bad state, flipping a bit in the bad state and not flipping it.
+     */
+    private double logStayGood, logGoodToBad, logError, logNoError;
+
+    /**
+     * The log of the ratio between the real and biased probability of a run starting in the good and the bad state.
+     */
+    private double logGoodStart, logBadStart;
+
+    /**
+     * The log of the ratio between the real and biased probability of the state the current run started in.
+     */
+    private double logStart;
+
+    /**
+     * The number of draws of each outcome since the start of the current run.
+     */
+    private long stayGoodCount, goodToBadCount, errorCount, noErrorCount;
+
+    /**
+     * Makes an importance sampling model, biased so that a run of the given length is expected to enter the bad
+     * state about once every two runs. Only that rare transition is biased: biasing every bit sent in the bad state
+     * as well multiplies the likelihood ratio over every one of them, so that over a whole table it either
+     * collapses to 0 or swamps the estimate.
+     * @param pOfError The probability that a bit is flipped while the error model is in a bad state.
+     * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
+     * @param pOfBadToGood The probability that while being in a bad state that the model flips into a good state.
+     * @param runLength The number of bits in each run, such as the bits of a whole interleaving table.
+     * @param randomGen The generator of the random numbers, which must not be used by anything else.
+     */
+    public ImportanceSamplingErrorModel(double pOfError, double pOfGoodToBad, double pOfBadToGood, int runLength, SplittableRandom randomGen) {
+        this(pOfError, pOfGoodToBad, pOfBadToGood,
+                pOfError, Math.max(pOfGoodToBad, 0.5 / runLength), pOfBadToGood, randomGen);
+    }
+
+    /**
+     * Makes an importance sampling model with the given biased probabilities. A biased probability may only be 0 or 1
+     * where the real one is the same, as otherwise some outcomes of the real model could never be drawn.
+     * @param pOfError The probability that a bit is flipped while the error model is in a bad state.
+     * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
+     * @param pOfBadToGood The probability that while being in a bad state that the model flips into a good state.
+     * @param qOfError The probability that the biased model flips a bit in the bad state.
+     * @param qOfGoodToBad The probability that the biased model goes from the good state to the bad state.
+     * @param qOfBadToGood The probability that the biased model goes from the bad state to the good state.
+     * @param randomGen The generator of the random numbers, which must not be used by anything else.
+     */
+    public ImportanceSamplingErrorModel(double pOfError, double pOfGoodToBad, double pOfBadToGood,
+                                        double qOfError, double qOfGoodToBad, double qOfBadToGood, SplittableRandom randomGen) {
+
+        if(pOfBadToGood != qOfBadToGood)
+            throw new IllegalArgumentException("Only the probabilities of entering the bad state and of an error in it can be biased.");
+
+        this.qOfError = qOfError;
+        this.qOfGoodToBad = qOfGoodToBad;
+        this.qOfBadToGood = qOfBadToGood;
+
+        //the biased model starts in its own stationary distribution, unless the real model can only start in one state
+        double pOfBadStationary = pOfGoodToBad + pOfBadToGood == 0.0 ? 0.0 : pOfGoodToBad / (pOfGoodToBad + pOfBadToGood);
+        this.qOfBadStart = pOfBadStationary == 0.0 || pOfBadStationary == 1.0 ? pOfBadStationary : qOfGoodToBad / (qOfGoodToBad + qOfBadToGood);
+
+        this.logGoodStart = logRatio(1.0 - pOfBadStationary, 1.0 - this.qOfBadStart);
+        this.logBadStart = logRatio(pOfBadStationary, this.qOfBadStart);
+
+        this.logStayGood = logRatio(1.0 - pOfGoodToBad, 1.0 - qOfGoodToBad);
+        this.logGoodToBad = logRatio(pOfGoodToBad, qOfGoodToBad);
+        this.logError = logRatio(pOfError, qOfError);
+        this.logNoError = logRatio(1.0 - pOfError, 1.0 - qOfError);
+
+        //the random number generator of this model
+        this.randomGen = randomGen;
+
+        this.startRun();
+    }
+
+    /**
+     * Starts a new run of bits, drawing its first state from the stationary distribution of the biased model and
+     * starting its likelihood ratio from the ratio of that draw.
+     */
+    public void startRun() {
+
+        this.goodState = this.randomGen.nextDouble() >= this.qOfBadStart;
+        this.logStart = this.goodState ? this.logGoodStart : this.logBadStart;
+
+        this.stayGoodCount = 0;
+        this.goodToBadCount = 0;
+        this.errorCount = 0;
+        this.noErrorCount = 0;
+    }
+
+    /**
+     * Gives the likelihood ratio of the bits drawn since the start of the current run.
+     * @return The probability of the draws under the real model over their probability under the biased model.
+     */
+    public double getLikelihoodRatio() {
+        return Math.exp(this.logStart + term(this.stayGoodCount, this.logStayGood) + term(this.goodToBadCount, this.logGoodToBad)
+                + term(this.errorCount, this.logError) + term(this.noErrorCount, this.logNoError));
+    }
+
+    /**
+     * Determines whether or not a bit should be flipped using the biased model, counting the outcome of each draw.
+     * @return True if a bit should be flipped, false if not.
+     */
+    public boolean flip() {
+
+        //the result to be returned
+        boolean result = false;
+
+        double stateVal = this.randomGen.nextDouble();
+
+        if(!this.goodState) {
+
+            if(this.randomGen.nextDouble() <= this.qOfError) {
+                result = true;
+                this.errorCount++;
+            } else {
+                this.noErrorCount++;
+            }
+
+            //leaving the bad state is not biased, so it does not change the likelihood ratio
+            if(stateVal <= this.qOfBadToGood)
+                this.goodState = true;
+
+        } else if(stateVal <= this.qOfGoodToBad) {
+            this.goodState = false;
+            this.goodToBadCount++;
+        } else {
+            this.stayGoodCount++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Simulates the errors for a run of bits in one go, drawing exactly the same random numbers in the same order
+     * as calling flip() for every bit.
+     * @param mask The array to write the mask into.
+     * @param numberOfBits The number of bits to simulate.
+     */
+    @Override
+    public void fillErrorMask(long[] mask, int numberOfBits) {
+
+        //local copies of the model, written back once the mask is filled
+        boolean good = this.goodState;
+        SplittableRandom random = this.randomGen;
+        long goodToBad = 0, errors = 0, badBits = 0;
+
+        for(int word = 0; word << 6 < numberOfBits; word++) {
+
+            //the mask for the next 64 bits and the number of them that are in the run
+            long bits = 0L;
+            int count = Math.min(64, numberOfBits - (word << 6));
+
+            for(int i = 0; i < count; i++) {
+
+                double stateVal = random.nextDouble();
+
+                if(good) {
+                    if(stateVal <= this.qOfGoodToBad) {
+                        good = false;
+                        goodToBad++;
+                    }
+                } else {
+                    badBits++;
+                    if(random.nextDouble() <= this.qOfError) {
+                        bits |= 1L << i;
+                        errors++;
+                    }
+                    if(stateVal <= this.qOfBadToGood)
+                        good = true;
+                }
+            }
+
+            mask[word] = bits;
+        }
+
+        this.goodState = good;
+        this.goodToBadCount += goodToBad;
+        this.stayGoodCount += numberOfBits - badBits - goodToBad;
+        this.errorCount += errors;
+        this.noErrorCount += badBits - errors;
+    }
+
+    /**
+     * Gives the log of the ratio between a real and a biased probability.
+     * @param p The real probability.
+     * @param q The biased probability.
+     * @return The log of p over q, which is 0 where they are the same.
+     */
+    private static double logRatio(double p, double q) {
+        return p == q ? 0.0 : Math.log(p) - Math.log(q);
+    }
+
+    /**
+     * Gives the contribution of the draws of one outcome to the log of the likelihood ratio.
+     * @param count The number of draws with the outcome.
+     * @param logRatio The log of the ratio for a single draw.
+     * @return The contribution, which is 0 when there are no draws even if the ratio is infinite.
+     */
+    private static double term(long count, double logRatio) {
+        return count == 0 ? 0.0 : count * logRatio;
+    }
+}
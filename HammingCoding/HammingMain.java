@@ -1,22 +1,66 @@
 package HammingCoding;
 
+import HammingCoding.ErrorModels.ErrorModelType;
+import HammingCoding.HammingModules.AdaptiveStopping;
+import HammingCoding.HammingModules.BitPacking;
+import HammingCoding.HammingModules.ConvolutionalInterleaver;
 import HammingCoding.HammingModules.HammingManager;
+import HammingCoding.HammingModules.InterleaverType;
+import HammingCoding.HammingModules.MarkovChainEvaluator;
+import HammingCoding.HammingModules.MatrixMultipliers;
+import HammingCoding.HammingModules.PermutationInterleaver;
+import HammingCoding.HammingModules.SimulationMode;
+import HammingCoding.HammingModules.HammingCode;
+import HammingCoding.HammingModules.InterleavingManager;
+import HammingCoding.HammingModules.SweepExecutor;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Created by bnjhope on 20/10/16.
  */
 public class HammingMain {
 
+    /**
+     * Collects a value from every benchmarked operation, so that none of the work can be optimised away.
+     */
+    private static volatile long benchmarkSink;
+
     public static void main(String[] args) {
 
-        final String testFlag = "-t", outputFlag = "-o", graphFlag = "-g";
+        final String testFlag = "-t", outputFlag = "-o", graphFlag = "-g", benchmarkFlag = "-b", checkFlag = "-v";
         int val, interleaveHeight;
         double pOfError, pOfGoodToBad, pOfBadToGood;
         HammingManager hm = new HammingManager();
 
+        //the simulation mode and error model can be chosen with "-m <mode>" and "-e <model>" after the other arguments
+        SimulationMode mode = SimulationMode.fromName(parseOption(args, "-m", SimulationMode.FULL.getName()));
+        ErrorModelType errorModelType = ErrorModelType.fromName(parseOption(args, "-e", ErrorModelType.BURST.getName()));
+        hm.setSimulationMode(mode);
+        hm.setErrorModelType(errorModelType);
+
+        //the block interleaver can be swapped for a convolutional one with "-il convolutional"
+        InterleaverType interleaverType = InterleaverType.fromName(parseOption(args, "-il", InterleaverType.BLOCK.getName()));
+        hm.setInterleaverType(interleaverType);
+
+        //runs can be reproduced by giving the seed of the random numbers with "-s <seed>"
+        long seed = Long.parseLong(parseOption(args, "-s", Long.toString(new SplittableRandom().nextLong())));
+        hm.setRandomGenerator(new SplittableRandom(seed));
+
+        //an adaptive number of iterations is run when the target width of the confidence interval is given with
+        //"-a <width>", optionally also stopping once the number of error events given with "-ae <events>" have been seen
+        String targetWidth = parseOption(args, "-a", null);
+        AdaptiveStopping stopping = targetWidth == null ? null : new AdaptiveStopping(Double.parseDouble(targetWidth), Long.parseLong(parseOption(args, "-ae", "0")));
+        hm.setStopping(stopping);
+
+        //the number of threads the tests and graph data are run on can be chosen with "-p <threads>"
+        int parallelism = Integer.parseInt(parseOption(args, "-p", Integer.toString(Runtime.getRuntime().availableProcessors())));
+
         String instructFlag = args[0];
         if (instructFlag.equals(testFlag)) {
-            runTests();
+            runTests(mode, errorModelType, interleaverType, parallelism, seed, stopping);
         } else if (instructFlag.equals(outputFlag)) {
 
             val = Integer.parseInt(args[1]);
@@ -25,17 +69,77 @@ public class HammingMain {
             pOfBadToGood = Double.parseDouble(args[4]);
             interleaveHeight = Integer.parseInt(args[5]);
 
-            hm.doHammingProcess(val, pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, "-o", 500);
+            //the number of iterations can be chosen with "-i <iterations>", and they can be split across
+            //threads with "-w <workers>", in which case the words at every stage are not output
+            int iterations = Integer.parseInt(parseOption(args, "-i", "500"));
+            hm.setWorkers(Integer.parseInt(parseOption(args, "-w", "1")));
+
+            //the counts of the caches of converted words are only output when asked for with "-c"
+            hm.setShowCacheStatistics(hasFlag(args, "-c"));
+
+            hm.doHammingProcess(val, pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, "-o", iterations);
         } else if (instructFlag.equals(graphFlag)) {
-            generateGraphData();
+            generateGraphData(mode, errorModelType, interleaverType, parallelism, seed, stopping);
+        } else if (instructFlag.equals(benchmarkFlag)) {
+            runBenchmark();
+        } else if (instructFlag.equals(checkFlag)) {
+            //every check is run, even after one has failed
+            boolean passed = runImportanceCheck(seed);
+            passed &= runConvolutionalCheck(seed);
+            passed &= runPermutationCheck(seed);
+
+            if (!passed)
+                System.exit(1);
         } else {
             System.out.println("Invalid type flag.");
         }
 
     }
 
-    public static void runTests() {
-        HammingManager hm = new HammingManager();
+    /**
+     * Finds the value given after an option flag in the arguments.
+     * @param args The command line arguments.
+     * @param flag The flag of the option, such as "-m".
+     * @param defaultValue The value to use if the flag is not given.
+     * @return The argument after the flag, or the default value if there is no flag.
+     */
+    private static String parseOption(String[] args, String flag, String defaultValue) {
+
+        for (int i = 1; i < args.length - 1; i++) {
+            if (args[i].equals(flag))
+                return args[i + 1];
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Checks whether a flag without a value is given in the arguments.
+     * @param args The command line arguments.
+     * @param flag The flag, such as "-c".
+     * @return True if the flag is given after the type flag.
+     */
+    private static boolean hasFlag(String[] args, String flag) {
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals(flag))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Runs the Hamming process for every combination of values, with the combinations run in parallel.
+     * @param mode The way transmissions are simulated.
+     * @param errorModelType The error model to simulate transmissions with.
+     * @param interleaverType The interleaver to spread the bits of codewords out with.
+     * @param parallelism The number of threads to run the combinations on.
+     * @param seed The master seed of the random numbers.
+     * @param stopping Decides how many iterations each process runs, or null to run a fixed number.
+     */
+    public static void runTests(SimulationMode mode, ErrorModelType errorModelType, InterleaverType interleaverType, int parallelism, long seed, AdaptiveStopping stopping) {
+        SweepExecutor sweep = new SweepExecutor(parallelism, mode, errorModelType, interleaverType, seed, stopping);
 
         //the start and end values for the r value of a Hamming process
         final int rStart = 3, rEnd = 8;
@@ -60,24 +164,32 @@ public class HammingMain {
                 for (double pOfError = pOfErrorStart; pOfError <= pOfErrorEnd; pOfError += probabilityIncrement) {
                     for (double pOfGoodToBad = pOfGoodToBadStart; pOfGoodToBad <= pOfGoodToBadEnd; pOfGoodToBad += probabilityIncrement) {
                         for (double pOfBadToGood = pOfBadToGoodStart; pOfBadToGood <= pOfBadToGoodEnd; pOfBadToGood += probabilityIncrement) {
-                            hm.doHammingProcess(r, pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, "-t", 1000);
+                            sweep.submit(r, pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, "-t", 1000);
                         }
-                        System.out.println();
+                        sweep.submitText(System.lineSeparator());
                     }
-                    System.out.println();
+                    sweep.submitText(System.lineSeparator());
                 }
-                System.out.println();
+                sweep.submitText(System.lineSeparator());
             }
-            System.out.println();
+            sweep.submitText(System.lineSeparator());
         }
 
+        sweep.outputResults();
+
     }
 
     /**
      * Used to output coordinates needed for graph and table data.
+     * @param mode The way transmissions are simulated.
+     * @param errorModelType The error model to simulate transmissions with.
+     * @param interleaverType The interleaver to spread the bits of codewords out with.
+     * @param parallelism The number of threads to run the processes on.
+     * @param seed The master seed of the random numbers.
+     * @param stopping Decides how many iterations each process runs, or null to run a fixed number.
      */
-    public static void generateGraphData() {
-        HammingManager hm = new HammingManager();
+    public static void generateGraphData(SimulationMode mode, ErrorModelType errorModelType, InterleaverType interleaverType, int parallelism, long seed, AdaptiveStopping stopping) {
+        SweepExecutor sweep = new SweepExecutor(parallelism, mode, errorModelType, interleaverType, seed, stopping);
 
         //fixed values used when they are not being varied.
         final int rFixed = 2, interleaveHeightFixed = 4;
@@ -85,35 +197,282 @@ public class HammingMain {
 
         //get data results when we vary the value of r
         for (int r = 3; r <= 8; r++) {
-            hm.doHammingProcess(r, pErrorFixed, pGoodToBadFixed, pBadToGoodFixed, interleaveHeightFixed, "-r", 500);
+            sweep.submit(r, pErrorFixed, pGoodToBadFixed, pBadToGoodFixed, interleaveHeightFixed, "-r", 500);
         }
 
-        System.out.println("\n\n");
+        sweep.submitText("\n\n" + System.lineSeparator());
 
         //get data results when we vary the probability of an error occuring in a bad state
         for (double pError = 0.1; pError <= 0.9; pError += 0.1) {
-            hm.doHammingProcess(rFixed, pError, pGoodToBadFixed, pBadToGoodFixed, interleaveHeightFixed, "-pe", 500);
+            sweep.submit(rFixed, pError, pGoodToBadFixed, pBadToGoodFixed, interleaveHeightFixed, "-pe", 500);
         }
 
-        System.out.println("\n\n");
+        sweep.submitText("\n\n" + System.lineSeparator());
 
         //get data results when we vary the probability of changing from a good to a bad state
         for (double pGoodToBad = 0.1; pGoodToBad <= 0.9; pGoodToBad += 0.1) {
-            hm.doHammingProcess(rFixed, pErrorFixed, pGoodToBad, pBadToGoodFixed, interleaveHeightFixed, "-pgb", 500);
+            sweep.submit(rFixed, pErrorFixed, pGoodToBad, pBadToGoodFixed, interleaveHeightFixed, "-pgb", 500);
         }
 
-        System.out.println("\n\n");
+        sweep.submitText("\n\n" + System.lineSeparator());
 
         //get data results when we vary the probability of changing from a bad to a good state
         for (double pBadToGood = 0.1; pBadToGood <= 0.9; pBadToGood += 0.1) {
-            hm.doHammingProcess(rFixed, pErrorFixed, pGoodToBadFixed, pBadToGood, interleaveHeightFixed, "-pbg", 500);
+            sweep.submit(rFixed, pErrorFixed, pGoodToBadFixed, pBadToGood, interleaveHeightFixed, "-pbg", 500);
         }
 
-        System.out.println("\n\n");
+        sweep.submitText("\n\n" + System.lineSeparator());
 
         //get data results when we vary the interleaving height
         for (int interleaveHeight = 1; interleaveHeight <= 20; interleaveHeight++) {
-            hm.doHammingProcess(rFixed, pErrorFixed, pGoodToBadFixed, pBadToGoodFixed, interleaveHeight, "-ih", 500);
+            sweep.submit(rFixed, pErrorFixed, pGoodToBadFixed, pBadToGoodFixed, interleaveHeight, "-ih", 500);
+        }
+
+        sweep.outputResults();
+    }
+
+    /**
+     * Checks the importance sampling mode against the exact mode on a small grid of values, outputting both success
+     * rates of every combination and whether they agree. The importance sampling estimate agrees when it is within
+     * a few half widths of its confidence interval of the exact success rate.
+     * @param seed The master seed of the random numbers.
+     * @return True if the estimates of every combination agree with the exact success rates.
+     */
+    public static boolean runImportanceCheck(long seed) {
+
+        //the values checked, which include rare transitions to the bad state that importance sampling is biased towards
+        final int[] rValues = {3, 4, 5}, interleaveHeights = {1, 4};
+        final double[] pOfErrors = {0.1, 0.5}, pOfGoodToBads = {0.001, 0.3}, pOfBadToGoods = {0.1, 0.5};
+
+        //the iterations the exact success rate is averaged over, which make the start of the chain in the good
+        //state negligible next to the importance sampling model starting in its stationary distribution
+        final int exactIterations = 10000;
+
+        //the target width of the interval, and the number of half widths the estimate can be away from the exact rate
+        final double targetWidth = 0.1, tolerance = 3.0;
+
+        HammingManager hm = new HammingManager();
+        hm.setSimulationMode(SimulationMode.IMPORTANCE);
+        hm.setRandomGenerator(new SplittableRandom(seed));
+        hm.setStopping(new AdaptiveStopping(targetWidth, 0));
+
+        int failures = 0;
+
+        for (int r : rValues) {
+            MarkovChainEvaluator evaluator = new MarkovChainEvaluator(r);
+
+            for (double pOfError : pOfErrors) {
+                for (double pOfGoodToBad : pOfGoodToBads) {
+                    for (double pOfBadToGood : pOfBadToGoods) {
+                        for (int interleaveHeight : interleaveHeights) {
+                            double exact = evaluator.getSuccessRate(pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, exactIterations);
+
+                            hm.runHammingProcess(r, pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, "-t", 0);
+                            double estimate = hm.getSuccessRate(), halfWidth = hm.getIntervalHalfWidth();
+                            boolean agrees = Math.abs(estimate - exact) <= tolerance * halfWidth;
+
+                            if (!agrees)
+                                failures++;
+
+                            System.out.println(String.format("r : %d \t pOfError : %.1f \t pGB : %.3f \t pBG : %.1f \t Interleave Height : %d \t Exact : %%%f \t Importance : %%%f +/- %%%f \t %s",
+                                    r, pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, exact, estimate, halfWidth, agrees ? "OK" : "FAILED"));
+                        }
+                    }
+                }
+            }
         }
+
+        System.out.println(failures == 0 ? "Importance sampling agrees with the exact mode." : failures + " combinations disagree with the exact mode.");
+
+        return failures == 0;
+    }
+
+    /**
+     * Checks that pushing codewords through the convolutional interleaver one at a time gives exactly the same bits
+     * as putting them through a table's worth of rows at a time, both when interleaving and de-interleaving, and
+     * that every codeword comes out of the de-interleaver the delay number of cycles after it went in.
+     * @param seed The seed of the random codewords.
+     * @return True if both ways agree for every size of table checked.
+     */
+    public static boolean runConvolutionalCheck(long seed) {
+
+        //the word lengths and heights checked, and the number of tables put through each pair of interleavers
+        final int[] wordLengths = {7, 31, 127}, heights = {1, 5, 40, 200};
+        final int tables = 6;
+
+        SplittableRandom randomGen = new SplittableRandom(seed);
+        int failures = 0;
+
+        for (int wordLength : wordLengths) {
+            for (int height : heights) {
+
+                ConvolutionalInterleaver byTable = new ConvolutionalInterleaver(height, wordLength), byCodeword = new ConvolutionalInterleaver(height, wordLength);
+                InterleavingManager blockInterleaver = new InterleavingManager(height, wordLength);
+
+                //every codeword pushed so far row by row, and the buffers of a table and of a single codeword
+                long[] pushed = new long[BitPacking.wordsFor(tables * height * wordLength)];
+                long[] rows = new long[BitPacking.wordsFor(height * wordLength)], sent = new long[rows.length], received = new long[rows.length];
+                long[] codeword = new long[BitPacking.wordsFor(wordLength)], cycleBits = new long[codeword.length], pulled = new long[codeword.length];
+                int mismatches = 0;
+
+                for (int table = 0; table < tables; table++) {
+
+                    for (int i = 0; i < rows.length; i++)
+                        rows[i] = randomGen.nextLong();
+
+                    BitPacking.copyBits(rows, 0, pushed, table * height * wordLength, height * wordLength);
+
+                    //interleave and de-interleave the whole table, read out column by column as the block interleaver sends it
+                    blockInterleaver.encodePacked(rows, sent);
+                    byTable.interleave(sent);
+                    System.arraycopy(sent, 0, received, 0, sent.length);
+                    byTable.deinterleave(received);
+                    blockInterleaver.decodePacked(received, rows);
+
+                    for (int row = 0; row < height; row++) {
+
+                        int cycle = table * height + row, sentCycle = cycle - byCodeword.getDelay();
+
+                        BitPacking.copyBits(pushed, cycle * wordLength, codeword, 0, wordLength);
+                        byCodeword.pushCodeword(codeword, cycleBits);
+                        byCodeword.pullCodeword(cycleBits, pulled);
+
+                        for (int position = 0; position < wordLength; position++) {
+
+                            //the codeword that went in the delay number of cycles ago, or 0s before the first one
+                            int expected = sentCycle < 0 ? 0 : BitPacking.getBit(pushed, sentCycle * wordLength + position);
+
+                            if (BitPacking.getBit(cycleBits, position) != BitPacking.getBit(sent, row * wordLength + position)
+                                    || BitPacking.getBit(pulled, position) != BitPacking.getBit(rows, row * wordLength + position)
+                                    || BitPacking.getBit(pulled, position) != expected)
+                                mismatches++;
+                        }
+                    }
+                }
+
+                if (mismatches > 0)
+                    failures++;
+
+                System.out.println(String.format("Word Length : %d \t Height : %d \t Depth : %d \t Delay : %d \t Mismatched Bits : %d \t %s",
+                        wordLength, height, byCodeword.getDepth(), byCodeword.getDelay(), mismatches, mismatches == 0 ? "OK" : "FAILED"));
+            }
+        }
+
+        System.out.println(failures == 0 ? "The convolutional interleaver gives the same bits one codeword at a time as a table at a time." : failures + " sizes of table disagree between the two ways.");
+
+        return failures == 0;
+    }
+
+    /**
+     * Checks the permutation drawn for the pseudo-random interleaver of each of a few sizes of table, outputting the
+     * spread it achieves. A permutation passes if it achieves at least the spread it was drawn for and the bits of
+     * random tables come back unchanged after being interleaved and de-interleaved with it.
+     * @param seed The seed of the random tables.
+     * @return True if every permutation passes.
+     */
+    public static boolean runPermutationCheck(long seed) {
+
+        //the word lengths and heights checked, and the number of random tables put through each permutation
+        final int[] wordLengths = {7, 31, 127}, heights = {1, 5, 40, 200};
+        final int tables = 6;
+
+        SplittableRandom randomGen = new SplittableRandom(seed);
+        int failures = 0;
+
+        for (int wordLength : wordLengths) {
+            for (int height : heights) {
+
+                PermutationInterleaver permutation = PermutationInterleaver.forTable(height, wordLength);
+                int targetSpread = PermutationInterleaver.targetSpreadFor(height), size = height * wordLength;
+
+                long[] table = new long[BitPacking.wordsFor(size)], stream = new long[table.length], back = new long[table.length];
+                boolean roundTrips = true;
+
+                for (int i = 0; i < tables; i++) {
+
+                    for (int j = 0; j < table.length; j++)
+                        table[j] = randomGen.nextLong();
+
+                    //only the bits of the table itself are carried through
+                    if ((size & 63) != 0)
+                        table[table.length - 1] &= (1L << (size & 63)) - 1;
+
+                    permutation.encodePacked(table, stream);
+                    permutation.decodePacked(stream, back);
+                    roundTrips &= Arrays.equals(table, back);
+                }
+
+                boolean passes = roundTrips && permutation.getSpread() >= targetSpread;
+
+                if (!passes)
+                    failures++;
+
+                System.out.println(String.format("Word Length : %d \t Height : %d \t Target Spread : %d \t Spread : %d \t %s",
+                        wordLength, height, targetSpread, permutation.getSpread(), passes ? "OK" : "FAILED"));
+            }
+        }
+
+        System.out.println(failures == 0 ? "Every pseudo-random permutation reaches its spread and round trips." : failures + " permutations fall short.");
+
+        return failures == 0;
+    }
+
+    /**
+     * Times encoding, correcting and decoding packed words with the scalar and the vector matrix
+     * multipliers and outputs the speedup for each value of r.
+     * The vector multiplier is only available when the JVM is started with --add-modules jdk.incubator.vector.
+     */
+    public static void runBenchmark() {
+
+        //the range of r values to time, and the number of words to put through each codec per timing
+        final int rStart = 3, rEnd = 10, wordsPerRun = 200000, warmupRuns = 3;
+
+        if (!MatrixMultipliers.isVectorAvailable())
+            System.out.println("Vector API not available, both columns use the scalar multiplier.");
+
+        for (int r = rStart; r <= rEnd; r++) {
+            HammingCode scalarCodec = new HammingCode(r, MatrixMultipliers.scalar());
+            HammingCode vectorCodec = new HammingCode(r, MatrixMultipliers.vector());
+
+            //warm up both codecs before the timed run so that they have both been compiled
+            for (int i = 0; i < warmupRuns; i++) {
+                timeCodec(scalarCodec, wordsPerRun);
+                timeCodec(vectorCodec, wordsPerRun);
+            }
+
+            double scalarTime = timeCodec(scalarCodec, wordsPerRun), vectorTime = timeCodec(vectorCodec, wordsPerRun);
+
+            System.out.println(String.format("r : %d \t Word Length : %d \t Scalar : %.1f ns/word \t Vector : %.1f ns/word \t Speedup : %.2fx",
+                    r, scalarCodec.getWordLength(), scalarTime, vectorTime, scalarTime / vectorTime));
+        }
+    }
+
+    /**
+     * Encodes, corrupts, corrects and decodes random words with a codec.
+     * @param codec The codec to time.
+     * @param numberOfWords The number of words to put through the codec.
+     * @return The average time taken per word in nanoseconds.
+     */
+    private static double timeCodec(HammingCode codec, int numberOfWords) {
+
+        Random randomGen = new Random(numberOfWords);
+        long[] data = new long[codec.getDataLongs()], codeword = new long[codec.getCodewordLongs()];
+
+        for (int i = 0; i < data.length; i++)
+            data[i] = randomGen.nextLong();
+        data[data.length - 1] &= -1L >>> (64 * data.length - codec.getDimension());
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < numberOfWords; i++) {
+            codec.encode(data, codeword);
+            codeword[0] ^= 1L << (i & 7);
+            benchmarkSink += codec.correct(codeword);
+            codec.decode(codeword, data);
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        return (double) elapsed / numberOfWords;
     }
 }
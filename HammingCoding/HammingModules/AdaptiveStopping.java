@@ -0,0 +1,103 @@
+package HammingCoding.HammingModules;
+
+/**
+ * Decides when a process has run enough iterations, instead of running a fixed number of them. A process stops
+ * once the 95% confidence interval of its success rate is narrower than a target width, or once a minimum number
+ * of error events have been seen, as long as it has run a minimum number of iterations. It always stops at a maximum
+ * number of iterations, for processes where neither happens.
+ * The width of the interval is only trusted once a few iterations with errors have effectively been seen, or while
+ * none have been seen at all, as the variance of a handful of rare errors, and especially of weighted ones, says
+ * little about the real variance. Error events are counted by their effective number rather than by the errors
+ * seen, so that errors that come in clumps, or whose weights are dominated by a few of them or have vanished,
+ * never make a degenerate variance look trustworthy.
+ */
+public class AdaptiveStopping {
+
+    /**
+     * The number of iterations run before stopping is considered, so that the variance can be trusted.
+     */
+    public static final long DEFAULT_MIN_ITERATIONS = 30;
+
+    /**
+     * The number of iterations after which a process always stops.
+     */
+    public static final long DEFAULT_MAX_ITERATIONS = 1000000;
+
+    /**
+     * The effective number of iterations with errors that must be seen before the width of the interval is trusted,
+     * unless no errors have been seen.
+     */
+    public static final long MIN_TRUSTED_ERRORS = 10;
+
+    /**
+     * The full width of the confidence interval to stop at, in percentage points.
+     */
+    private final double targetWidth;
+
+    /**
+     * The effective number of iterations with errors to stop at, or 0 if only the width of the interval is used.
+     */
+    private final long minErrorEvents;
+
+    /**
+     * The minimum and maximum number of iterations to run.
+     */
+    private final long minIterations, maxIterations;
+
+    public AdaptiveStopping(double targetWidth, long minErrorEvents) {
+        this(targetWidth, minErrorEvents, DEFAULT_MIN_ITERATIONS, DEFAULT_MAX_ITERATIONS);
+    }
+
+    public AdaptiveStopping(double targetWidth, long minErrorEvents, long minIterations, long maxIterations) {
+
+        if(targetWidth <= 0.0)
+            throw new IllegalArgumentException("The target width of the interval must be positive : " + targetWidth);
+
+        this.targetWidth = targetWidth;
+        this.minErrorEvents = minErrorEvents;
+        this.minIterations = Math.max(2, minIterations);
+        this.maxIterations = Math.max(this.minIterations, maxIterations);
+    }
+
+    /**
+     * Checks whether a process with the given statistics has run enough iterations.
+     * @param statistics The statistics of the iterations run so far.
+     * @return True if the process should stop, false if it should run another iteration.
+     */
+    public boolean isSatisfied(SuccessRateStatistics statistics) {
+
+        long iterations = statistics.getIterations();
+
+        if(iterations < this.minIterations)
+            return false;
+
+        if(iterations >= this.maxIterations)
+            return true;
+
+        if(this.minErrorEvents > 0 && statistics.getEffectiveErrorEvents() >= this.minErrorEvents)
+            return true;
+
+        if(statistics.getErrorCount() > 0 && statistics.getEffectiveErrorEvents() < MIN_TRUSTED_ERRORS)
+            return false;
+
+        return 2 * statistics.getIntervalHalfWidth() <= this.targetWidth;
+    }
+
+    /**
+     * Gives the rule each of a number of workers should stop by, when the iterations of a process are split
+     * between them and their statistics merged at the end. The half width of an interval shrinks with the square
+     * root of the iterations, so a worker stops at a target width that many times wider, after its share of the
+     * error events and of the maximum iterations, and the merged interval ends up at the target width.
+     * Each worker still runs the minimum number of iterations, as it trusts the variance of its own statistics.
+     * @param workers The number of workers the iterations are split between.
+     * @return The rule for each worker, which is this rule if there is only one worker.
+     */
+    public AdaptiveStopping forWorkers(int workers) {
+
+        if(workers <= 1)
+            return this;
+
+        return new AdaptiveStopping(this.targetWidth * Math.sqrt(workers), (this.minErrorEvents + workers - 1) / workers,
+                this.minIterations, (this.maxIterations + workers - 1) / workers);
+    }
+}
@@ -0,0 +1,141 @@
+package HammingCoding.HammingModules;
+
+import java.util.Arrays;
+
+/**
+ * Helpers for moving between strings of '0' and '1' characters and bits packed into longs.
+ * Bit i of a packed word is stored at bit (i % 64) of element (i / 64) of its array.
+ */
+public final class BitPacking {
+
+    private BitPacking() {
+    }
+
+    /**
+     * Gives the number of longs needed to hold the given number of bits.
+     * @param numberOfBits The number of bits to hold.
+     * @return The number of longs needed.
+     */
+    public static int wordsFor(int numberOfBits) {
+        return (numberOfBits + 63) >>> 6;
+    }
+
+    /**
+     * Packs a string of '0' and '1' characters into the given array of longs.
+     * @param bits The string of bits to pack.
+     * @param dest The array to pack the bits into, which is cleared before any bits are set.
+     */
+    public static void pack(String bits, long[] dest) {
+
+        Arrays.fill(dest, 0L);
+
+        for(int i = 0; i < bits.length(); i++) {
+            if(bits.charAt(i) == '1')
+                dest[i >>> 6] |= 1L << i;
+        }
+    }
+
+    /**
+     * Unpacks the given number of bits from an array of longs into a string of '0' and '1' characters.
+     * @param src The packed bits.
+     * @param length The number of bits to unpack.
+     * @return The string of bits.
+     */
+    public static String unpack(long[] src, int length) {
+
+        char[] result = new char[length];
+
+        for(int i = 0; i < length; i++)
+            result[i] = ((src[i >>> 6] >>> i) & 1L) == 0 ? '0' : '1';
+
+        return new String(result);
+    }
+
+    /**
+     * Gets the bit at the given index of a packed word.
+     * @param words The packed bits.
+     * @param index The index of the bit.
+     * @return 1 if the bit is set, 0 if not.
+     */
+    public static int getBit(long[] words, int index) {
+        return (int) ((words[index >>> 6] >>> index) & 1L);
+    }
+
+    /**
+     * Sets the bit at the given index of a packed word.
+     * @param words The packed bits.
+     * @param index The index of the bit.
+     */
+    public static void setBit(long[] words, int index) {
+        words[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Flips the bit at the given index of a packed word.
+     * @param words The packed bits.
+     * @param index The index of the bit.
+     */
+    public static void flipBit(long[] words, int index) {
+        words[index >>> 6] ^= 1L << index;
+    }
+
+    /**
+     * Reads up to 64 consecutive bits from a packed array.
+     * @param src The packed bits.
+     * @param index The index of the first bit to read.
+     * @param length The number of bits to read, between 1 and 64.
+     * @return The bits read, with the first bit in the lowest position.
+     */
+    public static long readBits(long[] src, int index, int length) {
+
+        int word = index >>> 6, shift = index & 63;
+
+        long result = src[word] >>> shift;
+
+        //pick up the remaining bits from the next long if the range crosses into it
+        if(shift != 0 && shift + length > 64)
+            result |= src[word + 1] << (64 - shift);
+
+        return length == 64 ? result : result & ((1L << length) - 1);
+    }
+
+    /**
+     * Writes up to 64 consecutive bits into a packed array, replacing the bits already there.
+     * @param dest The packed bits.
+     * @param index The index of the first bit to write.
+     * @param value The bits to write, with the first bit in the lowest position.
+     * @param length The number of bits to write, between 1 and 64.
+     */
+    public static void writeBits(long[] dest, int index, long value, int length) {
+
+        int word = index >>> 6, shift = index & 63;
+
+        long mask = length == 64 ? -1L : (1L << length) - 1;
+
+        value &= mask;
+
+        dest[word] = (dest[word] & ~(mask << shift)) | (value << shift);
+
+        //write the remaining bits into the next long if the range crosses into it
+        if(shift != 0 && shift + length > 64)
+            dest[word + 1] = (dest[word + 1] & ~(mask >>> (64 - shift))) | (value >>> (64 - shift));
+    }
+
+    /**
+     * Copies a range of bits from one packed array to another, up to 64 bits at a time.
+     * @param src The packed bits to copy from.
+     * @param srcIndex The index of the first bit to copy.
+     * @param dest The packed bits to copy into, replacing the bits already there.
+     * @param destIndex The index of the first bit to copy into.
+     * @param length The number of bits to copy.
+     */
+    public static void copyBits(long[] src, int srcIndex, long[] dest, int destIndex, int length) {
+
+        for(int done = 0; done < length; done += 64) {
+
+            int chunk = Math.min(64, length - done);
+
+            writeBits(dest, destIndex + done, readBits(src, srcIndex + done, chunk), chunk);
+        }
+    }
+}
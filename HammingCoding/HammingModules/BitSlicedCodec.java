@@ -0,0 +1,206 @@
+package HammingCoding.HammingModules;
+
+/**
+ * Hamming encoding and decoding of 64 words at a time in bit-sliced form. Slice i holds bit i of
+ * every word, with word j of the batch in bit j (its lane) of the slice, so parity and syndrome bits
+ * of all 64 words are found with plain XORs of whole slices.
+ * For implicit codes the syndrome of an error is its position plus one, so no table of column syndromes is held
+ * and each lane's error is corrected by flipping the bit at its syndrome directly.
+ */
+public class BitSlicedCodec {
+
+    /**
+     * The number of words processed together by each operation.
+     */
+    public static final int LANES = 64;
+
+    /**
+     * The length of each codeword, the dimension and the number of parity bits.
+     */
+    private final int wordLength, dimension, parityLength;
+
+    /**
+     * The syndrome a single error would produce at each position of a codeword, or null for an implicit code.
+     */
+    private final int[] columnSyndromes;
+
+    public BitSlicedCodec(HammingCode codec) {
+
+        this.wordLength = codec.getWordLength();
+        this.dimension = codec.getDimension();
+        this.parityLength = codec.getParityLength();
+
+        //an implicit code's column syndromes follow from the positions, so they are not stored
+        this.columnSyndromes = codec.isImplicit() ? null : new int[this.wordLength];
+
+        if(this.columnSyndromes != null) {
+            for(int position = 0; position < this.wordLength; position++)
+                this.columnSyndromes[position] = codec.getColumnSyndrome(position);
+        }
+    }
+
+    /**
+     * Gives the number of groups of 64 lanes needed to hold the given number of words.
+     * @param numberOfWords The number of words, such as the height of an interleaving table.
+     * @return The number of groups of lanes.
+     */
+    public static int groupsFor(int numberOfWords) {
+        return (numberOfWords + LANES - 1) / LANES;
+    }
+
+    /**
+     * Encodes 64 data words given as dimension slices into word length codeword slices.
+     * @param dataSlices The data slices.
+     * @param dataOffset The index of the first data slice.
+     * @param codeSlices The array to write the codeword slices into.
+     * @param codeOffset The index of the first codeword slice.
+     */
+    public void encode(long[] dataSlices, int dataOffset, long[] codeSlices, int codeOffset) {
+
+        //clear the parity slices before accumulating into them
+        for(int p = 0; p < this.parityLength; p++)
+            codeSlices[codeOffset + (1 << p) - 1] = 0L;
+
+        //the index of the next data slice to be placed in the codeword
+        int dataBitIndex = 0;
+
+        for(int position = 0; position < this.wordLength; position++) {
+
+            if(HammingCode.isParityPosition(position))
+                continue;
+
+            //the data slice, which is copied straight into its position
+            long slice = dataSlices[dataOffset + dataBitIndex++];
+            int column = this.columnOf(position);
+
+            codeSlices[codeOffset + position] = slice;
+
+            //and added into the parity slice of each parity bit which checks this position
+            for(int p = 0; p < this.parityLength; p++) {
+                if(((column >>> p) & 1) == 1)
+                    codeSlices[codeOffset + (1 << p) - 1] ^= slice;
+            }
+        }
+    }
+
+    /**
+     * Calculates the syndromes of 64 codewords, given as one slice per parity bit.
+     * @param codeSlices The codeword slices.
+     * @param codeOffset The index of the first codeword slice.
+     * @param syndromeSlices The array of parity length slices to write the syndromes into.
+     */
+    public void syndrome(long[] codeSlices, int codeOffset, long[] syndromeSlices) {
+
+        for(int p = 0; p < this.parityLength; p++)
+            syndromeSlices[p] = 0L;
+
+        for(int position = 0; position < this.wordLength; position++) {
+
+            long slice = codeSlices[codeOffset + position];
+            int column = this.columnOf(position);
+
+            for(int p = 0; p < this.parityLength; p++) {
+                if(((column >>> p) & 1) == 1)
+                    syndromeSlices[p] ^= slice;
+            }
+        }
+    }
+
+    /**
+     * Corrects a single bit error in each of 64 codewords using their syndrome slices.
+     * @param codeSlices The codeword slices to correct in place.
+     * @param codeOffset The index of the first codeword slice.
+     * @param syndromeSlices The syndrome slices of the codewords.
+     * @return A mask with the lane of every codeword that had a non-zero syndrome set.
+     */
+    public long correct(long[] codeSlices, int codeOffset, long[] syndromeSlices) {
+
+        //the lanes where any syndrome bit is set
+        long detected = 0L;
+
+        for(int p = 0; p < this.parityLength; p++)
+            detected |= syndromeSlices[p];
+
+        if(detected == 0L)
+            return detected;
+
+        //the syndrome of each lane of an implicit code is the position of its error plus one, so it is flipped directly
+        if(this.columnSyndromes == null) {
+            for(long lanes = detected; lanes != 0L; lanes &= lanes - 1) {
+                int lane = Long.numberOfTrailingZeros(lanes);
+                codeSlices[codeOffset + this.getSyndrome(syndromeSlices, lane) - 1] ^= 1L << lane;
+            }
+
+            return detected;
+        }
+
+        //a position is flipped in every lane whose syndrome matches the column of that position
+        for(int position = 0; position < this.wordLength; position++) {
+
+            long match = -1L;
+            int column = this.columnSyndromes[position];
+
+            for(int p = 0; p < this.parityLength; p++)
+                match &= (((column >>> p) & 1) == 1) ? syndromeSlices[p] : ~syndromeSlices[p];
+
+            codeSlices[codeOffset + position] ^= match;
+        }
+
+        return detected;
+    }
+
+    /**
+     * Gathers the syndrome of one codeword out of the syndrome slices of its batch.
+     * @param syndromeSlices The syndrome slices of the codewords.
+     * @param lane The lane of the codeword in the batch.
+     * @return The syndrome of the codeword.
+     */
+    public int getSyndrome(long[] syndromeSlices, int lane) {
+
+        int syndrome = 0;
+
+        for(int p = 0; p < this.parityLength; p++)
+            syndrome |= (int) ((syndromeSlices[p] >>> lane) & 1L) << p;
+
+        return syndrome;
+    }
+
+    /**
+     * Decodes 64 corrected codewords back into their data slices.
+     * @param codeSlices The codeword slices.
+     * @param codeOffset The index of the first codeword slice.
+     * @param dataSlices The array to write the data slices into.
+     * @param dataOffset The index of the first data slice.
+     */
+    public void decode(long[] codeSlices, int codeOffset, long[] dataSlices, int dataOffset) {
+
+        //the index of the next data slice to be taken from the codeword
+        int dataBitIndex = 0;
+
+        for(int position = 0; position < this.wordLength; position++) {
+            if(!HammingCode.isParityPosition(position))
+                dataSlices[dataOffset + dataBitIndex++] = codeSlices[codeOffset + position];
+        }
+    }
+
+    /**
+     * Gives the syndrome a single error at a position of a codeword would produce.
+     * @param position The position in the codeword.
+     * @return The column of the parity-check matrix for the position.
+     */
+    private int columnOf(int position) {
+        return this.columnSyndromes == null ? position + 1 : this.columnSyndromes[position];
+    }
+
+    public int getWordLength() {
+        return wordLength;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int getParityLength() {
+        return parityLength;
+    }
+}
@@ -1,6 +1,6 @@
 package HammingCoding.HammingModules;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Created by bh59 on 15/11/16.
@@ -8,15 +8,9 @@ import java.util.Random;
 public class Channel {
 
     /**
-     * This represents that there will be an equal probability of either a 1 or a 0 being transferred
-     * through the channel.
+     * The generator of the random numbers, each long of which gives 64 random bits.
      */
-    private static final double PROBABILITY_OF_ZERO_BIT = 0.5;
-
-    /**
-     * The generator of the random numbers.
-     */
-    private Random randomGen;
+    private SplittableRandom randomGen;
 
     /**
      * The dimension - which is the number of bits to return from the channel.
@@ -25,29 +19,54 @@ public class Channel {
 
     public Channel(int dimension) {
         this.dimension = dimension;
-        this.randomGen = new Random();
+        this.randomGen = new SplittableRandom();
+    }
+
+    /**
+     * Replaces the generator of the random numbers, so that the bits from the channel can be reproduced
+     * from the seed of the new generator.
+     * @param randomGen The generator of the random numbers, which must not be used by anything else.
+     */
+    public void setRandomGenerator(SplittableRandom randomGen) {
+        this.randomGen = randomGen;
+    }
+
+    /**
+     * Fills a packed word with a dimension length of bits, each equally likely to be a 0 or 1.
+     * @param dest The array to write the packed bits into.
+     */
+    public void fillBits(long[] dest) {
+        this.fillBits(dest, this.dimension);
+    }
+
+    /**
+     * Fills a packed array with random bits, each equally likely to be a 0 or 1, taking 64 bits at a time
+     * from the random number generator.
+     * @param dest The array to write the packed bits into.
+     * @param numberOfBits The number of bits to generate, with any bits after them in the last long cleared.
+     */
+    public void fillBits(long[] dest, int numberOfBits) {
+
+        int fullWords = numberOfBits >>> 6, remainder = numberOfBits & 63;
+
+        for(int i = 0; i < fullWords; i++)
+            dest[i] = this.randomGen.nextLong();
+
+        if(remainder != 0)
+            dest[fullWords] = this.randomGen.nextLong() & ((1L << remainder) - 1);
     }
 
     /**
      * Generates a dimension length of bits to return with equal probabilities of a 0 or 1.
+     * The string is only built from the packed bits for when the bits need to be shown.
      * @return A string of the dimension length of bits.
      */
     public String getBits() {
 
-        //the string of bits to return
-        String result = "";
-
-        //the value from the random generator
-        double bitVal;
+        long[] bits = new long[BitPacking.wordsFor(this.dimension)];
 
-        //generate the string by getting a random number between 0 and 1 -
-        //if the number is less than 0.5 then add a '0' to the result string,
-        //otherwise add a '1' to the result string.
-        for(int i = 0; i < dimension; i++) {
-            bitVal = this.randomGen.nextDouble();
-            result += (bitVal < PROBABILITY_OF_ZERO_BIT) ? '0' : '1';
-        }
+        this.fillBits(bits);
 
-        return result;
+        return BitPacking.unpack(bits, this.dimension);
     }
 }
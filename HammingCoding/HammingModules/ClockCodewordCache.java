@@ -0,0 +1,219 @@
+package HammingCoding.HammingModules;
+
+/**
+ * A cache holding a bounded number of entries, with keys and values kept in flat arrays of longs.
+ * Entries are found through an open addressing index, and when the cache is full the CLOCK policy
+ * chooses which entry to evict: the hand sweeps the slots, giving a second chance to any entry that
+ * has been used since it last passed.
+ */
+public class ClockCodewordCache implements ICodewordCache {
+
+    /**
+     * The number of longs in each key and in each value.
+     */
+    private final int keyLongs, valueLongs;
+
+    /**
+     * The maximum number of entries.
+     */
+    private final int capacity;
+
+    /**
+     * The keys and values of every slot in turn.
+     */
+    private final long[] keys, values;
+
+    /**
+     * Set for a slot when its entry has been used since the hand last passed it.
+     */
+    private final boolean[] referenced;
+
+    /**
+     * The open addressing index, holding the slot number plus one of an entry or 0 where it is empty.
+     */
+    private final int[] index;
+
+    /**
+     * The number of slots in use and the position of the clock hand.
+     */
+    private int size, hand;
+
+    /**
+     * Counts of lookups that were and were not found, and of entries evicted.
+     */
+    private long hits, misses, evictions;
+
+    /**
+     * @param keyLongs The number of longs in each key.
+     * @param valueLongs The number of longs in each value.
+     * @param capacity The maximum number of entries.
+     */
+    public ClockCodewordCache(int keyLongs, int valueLongs, int capacity) {
+        this.keyLongs = keyLongs;
+        this.valueLongs = valueLongs;
+        this.capacity = capacity;
+        this.keys = new long[capacity * keyLongs];
+        this.values = new long[capacity * valueLongs];
+        this.referenced = new boolean[capacity];
+
+        //keep the index at most half full so that probe sequences stay short
+        this.index = new int[Integer.highestOneBit(capacity) << 2];
+    }
+
+    public boolean get(long[] key, long[] value) {
+
+        int slot = this.find(key);
+
+        if(slot < 0) {
+            this.misses++;
+            return false;
+        }
+
+        System.arraycopy(this.values, slot * this.valueLongs, value, 0, this.valueLongs);
+        this.referenced[slot] = true;
+        this.hits++;
+        return true;
+    }
+
+    public void put(long[] key, long[] value) {
+
+        int slot = this.find(key);
+
+        //if the key is not already present then take a free slot, or evict an entry if there are none
+        if(slot < 0) {
+            if(this.size < this.capacity) {
+                slot = this.size++;
+            } else {
+                slot = this.evict();
+            }
+
+            System.arraycopy(key, 0, this.keys, slot * this.keyLongs, this.keyLongs);
+            this.insertIntoIndex(slot);
+        }
+
+        System.arraycopy(value, 0, this.values, slot * this.valueLongs, this.valueLongs);
+        this.referenced[slot] = false;
+    }
+
+    /**
+     * Finds the slot holding a key.
+     * @param key The packed key.
+     * @return The slot of the key, or -1 if it is not in the cache.
+     */
+    private int find(long[] key) {
+
+        int mask = this.index.length - 1;
+
+        for(int i = this.hash(key, 0) & mask; this.index[i] != 0; i = (i + 1) & mask) {
+            if(this.keyEquals(this.index[i] - 1, key))
+                return this.index[i] - 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Moves the clock hand round until it finds an entry that has not been used since it last passed,
+     * and removes that entry from the index.
+     * @return The slot that has been freed.
+     */
+    private int evict() {
+
+        while(this.referenced[this.hand]) {
+            this.referenced[this.hand] = false;
+            this.hand = (this.hand + 1) % this.capacity;
+        }
+
+        int slot = this.hand;
+
+        this.hand = (this.hand + 1) % this.capacity;
+        this.removeFromIndex(slot);
+        this.evictions++;
+
+        return slot;
+    }
+
+    /**
+     * Adds the key held in a slot to the index.
+     * @param slot The slot to add.
+     */
+    private void insertIntoIndex(int slot) {
+
+        int mask = this.index.length - 1, i = this.hash(this.keys, slot * this.keyLongs) & mask;
+
+        while(this.index[i] != 0)
+            i = (i + 1) & mask;
+
+        this.index[i] = slot + 1;
+    }
+
+    /**
+     * Removes the key held in a slot from the index, shifting back any later entries in the same probe
+     * sequence so that none of them become unreachable.
+     * @param slot The slot to remove.
+     */
+    private void removeFromIndex(int slot) {
+
+        int mask = this.index.length - 1, i = this.hash(this.keys, slot * this.keyLongs) & mask;
+
+        while(this.index[i] != slot + 1)
+            i = (i + 1) & mask;
+
+        //the gap left behind, and the entry after it which is considered for moving into the gap
+        int gap = i;
+
+        for(int j = (gap + 1) & mask; this.index[j] != 0; j = (j + 1) & mask) {
+
+            //where the entry at j would ideally sit
+            int home = this.hash(this.keys, (this.index[j] - 1) * this.keyLongs) & mask;
+
+            //the entry can move into the gap unless its home lies cyclically after the gap and up to j
+            if(((j - home) & mask) >= ((j - gap) & mask)) {
+                this.index[gap] = this.index[j];
+                gap = j;
+            }
+        }
+
+        this.index[gap] = 0;
+    }
+
+    /**
+     * Checks if the key held in a slot is the same as the given key.
+     */
+    private boolean keyEquals(int slot, long[] key) {
+
+        for(int i = 0; i < this.keyLongs; i++) {
+            if(this.keys[slot * this.keyLongs + i] != key[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Mixes the longs of a key into a hash for the index.
+     * @param src The array holding the key.
+     * @param offset The index of the first long of the key.
+     */
+    private int hash(long[] src, int offset) {
+
+        long h = 0L;
+
+        for(int i = 0; i < this.keyLongs; i++)
+            h = (h ^ src[offset + i]) * 0x9E3779B97F4A7C15L;
+
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+}
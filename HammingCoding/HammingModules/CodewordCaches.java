@@ -0,0 +1,42 @@
+package HammingCoding.HammingModules;
+
+/**
+ * Chooses the kind of cache to remember converted words with, based on how many keys there could be.
+ */
+public final class CodewordCaches {
+
+    /**
+     * The largest key, in bits, for which a slot is allocated for every possible key.
+     */
+    public static final int DENSE_MAX_KEY_BITS = 16;
+
+    /**
+     * The largest number of entries kept by a bounded cache.
+     */
+    public static final int BOUNDED_CAPACITY = 1 << 16;
+
+    /**
+     * The largest number of longs a bounded cache may hold across its keys and values, which limits
+     * the number of entries for long codes.
+     */
+    public static final int BOUNDED_LONGS = 1 << 22;
+
+    private CodewordCaches() {
+    }
+
+    /**
+     * Makes a cache for keys and values of the given sizes.
+     * @param keyBits The number of bits in each key.
+     * @param valueBits The number of bits in each value.
+     * @return A dense table if every key can have its own slot, otherwise a bounded CLOCK cache.
+     */
+    public static ICodewordCache forWords(int keyBits, int valueBits) {
+
+        if(keyBits <= DENSE_MAX_KEY_BITS)
+            return new DenseCodewordCache(keyBits, BitPacking.wordsFor(valueBits));
+
+        int keyLongs = BitPacking.wordsFor(keyBits), valueLongs = BitPacking.wordsFor(valueBits);
+
+        return new ClockCodewordCache(keyLongs, valueLongs, Math.max(1, Math.min(BOUNDED_CAPACITY, BOUNDED_LONGS / (keyLongs + valueLongs))));
+    }
+}
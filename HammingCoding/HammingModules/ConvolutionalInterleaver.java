@@ -0,0 +1,145 @@
+package HammingCoding.HammingModules;
+
+/**
+ * A convolutional (Forney) interleaver and de-interleaver pair, which spreads the bits of each codeword out over
+ * the transmission without having to fill a whole table first. Each bit position of a codeword has its own
+ * branch, and one codeword is sent per cycle, one bit from each branch in turn. The bit at position i is delayed
+ * by i times the depth in cycles by the interleaver, and by the rest of the word length less one times the depth
+ * by the de-interleaver, so every bit of a codeword comes out of the de-interleaver the same number of cycles
+ * after it went in.
+ *
+ * Consecutive bits of a codeword are sent the depth times the word length plus one bits apart, so a depth of
+ * the interleave height over the word length, rounded up, spreads bursts at least as far as a block interleaver
+ * of that height does. Each side only holds about half as many bits as a table, and each codeword only waits
+ * for about half as many bits as the table that a block interleaver fills before it can send anything.
+ *
+ * Codewords can be put through one at a time, as they are produced and received, with pushCodeword and
+ * pullCodeword. The simulations instead put them through a table's worth of rows at a time, which gives exactly the
+ * same bits as that many single codewords, but moves up to 64 bits of a branch at once rather than one. The
+ * branches are the columns of the table, so the delay lines work on the table read out column by column, and the
+ * block interleaver's transpose is used to turn the columns into the order the bits are sent in and back again.
+ * Both ways share the same delay lines, so they can be mixed. The delay lines start out full of 0s, which are the
+ * bits of all 0 codewords.
+ */
+public class ConvolutionalInterleaver {
+
+    /**
+     * The number of rows put through at a time and the word length, which is the number of branches.
+     */
+    private final int height, wordLength;
+
+    /**
+     * The number of cycles each branch is delayed by more than the branch before it in the interleaver.
+     */
+    private final int depth;
+
+    /**
+     * The delay lines of the interleaver and of the de-interleaver.
+     */
+    private final DelayLines interleaveLines, deinterleaveLines;
+
+    /**
+     * Transposes the rows put through at a time between the order of the columns and the order the bits are sent in.
+     */
+    private final InterleavingManager transposer;
+
+    /**
+     * A buffer for the table read out column by column.
+     */
+    private final long[] columns;
+
+    /**
+     * Creates an interleaver and de-interleaver pair for the given interleave height, with delay lines full of 0s.
+     * @param height The number of rows put through at a time, which also sets the depth.
+     * @param wordLength The length of each codeword.
+     */
+    public ConvolutionalInterleaver(int height, int wordLength) {
+
+        this.height = height;
+        this.wordLength = wordLength;
+        this.depth = depthFor(height, wordLength);
+
+        int[] interleaveDelays = new int[wordLength], deinterleaveDelays = new int[wordLength];
+
+        for(int branch = 0; branch < wordLength; branch++) {
+            interleaveDelays[branch] = branch * this.depth;
+            deinterleaveDelays[branch] = (wordLength - 1 - branch) * this.depth;
+        }
+
+        this.interleaveLines = new DelayLines(interleaveDelays);
+        this.deinterleaveLines = new DelayLines(deinterleaveDelays);
+
+        this.transposer = new InterleavingManager(height, wordLength);
+        this.columns = new long[BitPacking.wordsFor(height * wordLength)];
+    }
+
+    /**
+     * Works out the depth that spreads the bits of a codeword at least as far apart as a block interleaver would.
+     * @param height The height of the block interleaver's table.
+     * @param wordLength The length of each codeword.
+     * @return The depth, where 0 for a height of 1 sends every codeword as it is.
+     */
+    public static int depthFor(int height, int wordLength) {
+        return (height - 1 + wordLength - 1) / wordLength;
+    }
+
+    /**
+     * Interleaves a single codeword, which is one cycle of the interleaver.
+     * @param codeword The packed codeword to put in, with the bit at each position going into its own branch.
+     * @param sent The array to write the packed word length bits to send this cycle into, one from each branch in turn.
+     */
+    public void pushCodeword(long[] codeword, long[] sent) {
+        this.interleaveLines.delay(codeword, sent, 1);
+    }
+
+    /**
+     * Undoes the interleaving of a single cycle's worth of received bits, which completes the codeword that went
+     * into the interleaver the delay number of cycles earlier.
+     * @param received The packed word length bits received this cycle, one from each branch in turn.
+     * @param codeword The array to write the packed codeword that comes out of the de-interleaver into.
+     */
+    public void pullCodeword(long[] received, long[] codeword) {
+        this.deinterleaveLines.delay(received, codeword, 1);
+    }
+
+    /**
+     * Interleaves a table's worth of codewords in place, as if they were pushed through one at a time.
+     * @param bits The packed table read out column by column, as the block interleaver sends it, which is replaced
+     *             by the packed bits to send.
+     */
+    public void interleave(long[] bits) {
+        this.interleaveLines.delay(bits, this.columns, this.height);
+        this.transposer.decodePacked(this.columns, bits);
+    }
+
+    /**
+     * Undoes the interleaving of a table's worth of received bits in place, as if they were pulled through one
+     * cycle at a time.
+     * @param bits The packed bits received, which are replaced by the packed table of the codewords that come out
+     *             of the de-interleaver, read out column by column so that they can be decoded as a block table.
+     */
+    public void deinterleave(long[] bits) {
+        this.transposer.encodePacked(bits, this.columns);
+        this.deinterleaveLines.delay(this.columns, bits, this.height);
+    }
+
+    /**
+     * Gives the number of cycles between a codeword going into the interleaver and coming out of the de-interleaver.
+     * @return The delay in codewords.
+     */
+    public int getDelay() {
+        return (this.wordLength - 1) * this.depth;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gives the number of bits held in the delay lines of the interleaver, which is the same as the de-interleaver.
+     * @return The number of bits of memory on each side.
+     */
+    public long getMemoryBits() {
+        return this.interleaveLines.getMemoryBits();
+    }
+}
@@ -0,0 +1,93 @@
+package HammingCoding.HammingModules;
+
+/**
+ * A set of bit delay lines, one for each branch of a convolutional interleaver, each held as a packed ring buffer.
+ * Pushing a run of bits through a branch gives back the bits pushed into it as many bits earlier as its delay,
+ * with the line starting out full of 0s.
+ */
+public class DelayLines {
+
+    /**
+     * The delay of each branch, in bits.
+     */
+    private final int[] delays;
+
+    /**
+     * The packed ring buffer of each branch, which holds the last bits pushed into it.
+     */
+    private final long[][] rings;
+
+    /**
+     * The position in each ring buffer of the oldest bit, which is the next one to come out.
+     */
+    private final int[] heads;
+
+    /**
+     * Creates a set of delay lines, all holding 0s.
+     * @param delays The delay of each branch, in bits.
+     */
+    public DelayLines(int[] delays) {
+
+        this.delays = delays.clone();
+        this.rings = new long[delays.length][];
+        this.heads = new int[delays.length];
+
+        for(int branch = 0; branch < delays.length; branch++)
+            this.rings[branch] = new long[BitPacking.wordsFor(delays[branch])];
+    }
+
+    /**
+     * Pushes a run of bits through every branch, where the runs of the branches follow one after another.
+     * The source and destination may be the same array.
+     * @param src The packed runs of bits to push in, with the run of branch b starting at bit b times the length.
+     * @param dest The array to write the packed runs of bits that come out into, laid out in the same way.
+     * @param length The number of bits to push through each branch.
+     */
+    public void delay(long[] src, long[] dest, int length) {
+
+        for(int branch = 0; branch < this.delays.length; branch++) {
+
+            int delay = this.delays[branch], base = branch * length;
+            long[] ring = this.rings[branch];
+
+            //a branch without a delay passes its bits straight through
+            if(delay == 0) {
+                if(src != dest)
+                    BitPacking.copyBits(src, base, dest, base, length);
+                continue;
+            }
+
+            int head = this.heads[branch];
+
+            for(int done = 0; done < length; ) {
+
+                //swap up to 64 bits at a time for the oldest bits in the ring, stopping where the ring wraps round
+                int chunk = Math.min(Math.min(BitSlicedCodec.LANES, length - done), delay - head);
+
+                long in = BitPacking.readBits(src, base + done, chunk), out = BitPacking.readBits(ring, head, chunk);
+
+                BitPacking.writeBits(ring, head, in, chunk);
+                BitPacking.writeBits(dest, base + done, out, chunk);
+
+                done += chunk;
+                head = head + chunk == delay ? 0 : head + chunk;
+            }
+
+            this.heads[branch] = head;
+        }
+    }
+
+    /**
+     * Gives the total number of bits held in all the delay lines.
+     * @return The number of bits of memory the delay lines use.
+     */
+    public long getMemoryBits() {
+
+        long total = 0;
+
+        for(int delay : this.delays)
+            total += delay;
+
+        return total;
+    }
+}
@@ -0,0 +1,72 @@
+package HammingCoding.HammingModules;
+
+/**
+ * A cache for keys small enough that every possible key can be given its own slot in a table,
+ * indexed by the integer value of the key. Nothing is ever evicted.
+ */
+public class DenseCodewordCache implements ICodewordCache {
+
+    /**
+     * The number of longs in each value.
+     */
+    private final int valueLongs;
+
+    /**
+     * The values of every key in turn.
+     */
+    private final long[] values;
+
+    /**
+     * A bit for every key, set once a value has been stored for it.
+     */
+    private final long[] filled;
+
+    /**
+     * Counts of lookups that were and were not found.
+     */
+    private long hits, misses;
+
+    /**
+     * @param keyBits The number of bits in each key, with 2^keyBits slots being allocated.
+     * @param valueLongs The number of longs in each value.
+     */
+    public DenseCodewordCache(int keyBits, int valueLongs) {
+        this.valueLongs = valueLongs;
+        this.values = new long[(1 << keyBits) * valueLongs];
+        this.filled = new long[BitPacking.wordsFor(1 << keyBits)];
+    }
+
+    public boolean get(long[] key, long[] value) {
+
+        int index = (int) key[0];
+
+        if(BitPacking.getBit(this.filled, index) == 0) {
+            this.misses++;
+            return false;
+        }
+
+        System.arraycopy(this.values, index * this.valueLongs, value, 0, this.valueLongs);
+        this.hits++;
+        return true;
+    }
+
+    public void put(long[] key, long[] value) {
+
+        int index = (int) key[0];
+
+        System.arraycopy(value, 0, this.values, index * this.valueLongs, this.valueLongs);
+        BitPacking.setBit(this.filled, index);
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return 0;
+    }
+}
@@ -0,0 +1,483 @@
+package HammingCoding.HammingModules;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Hamming code for a value of r, with encoding and decoding on words packed into longs. The generator,
+ * error correction and decoder matrices are kept as rows of bitmasks so that each bit of a product is the
+ * parity of (row AND word).
+ * Codes with r above the implicit threshold hold no matrices at all. Their parity bits and syndromes are
+ * instead found as the XOR of the indices (plus one) of the set bits of a codeword, which takes time linear
+ * in the word length and no extra memory, so that codes with r up to 20 and beyond fit in memory.
+ * Instances never change once constructed, so the one held in the registry for each r is shared by every
+ * encoder and decoder using that r, on any thread.
+ */
+public class HammingCode {
+
+    /**
+     * The shared code for each value of r that has been asked for so far.
+     */
+    private static final ConcurrentHashMap<Integer, HammingCode> REGISTRY = new ConcurrentHashMap<>();
+
+    /**
+     * The largest r for which the registry builds codes with matrices, unless the
+     * HammingCoding.implicitThreshold system property gives another value. Codes whose codewords fit in a
+     * single long always use matrices.
+     */
+    public static final int DEFAULT_IMPLICIT_THRESHOLD = 8;
+
+    private static final int IMPLICIT_THRESHOLD = Integer.getInteger("HammingCoding.implicitThreshold", DEFAULT_IMPLICIT_THRESHOLD);
+
+    /**
+     * For each bit p below 6, a mask of the positions i within a long for which bit p of (i + 1) is set,
+     * ignoring the carry out of the lowest 6 bits.
+     */
+    private static final long[] LOW_INDEX_MASKS = new long[6];
+
+    static {
+        for(int p = 0; p < LOW_INDEX_MASKS.length; p++)
+            for(int i = 0; i < 64; i++)
+                if(((((i + 1) & 63) >>> p) & 1) == 1)
+                    LOW_INDEX_MASKS[p] |= 1L << i;
+    }
+
+    /**
+     * The length of each codeword.
+     */
+    private final int wordLength;
+
+    /**
+     * The dimension (i.e number of bits that actually contain data) in the Hamming code word.
+     */
+    private final int dimension;
+
+    /**
+     * The number of parity bits in each codeword.
+     */
+    private final int parityLength;
+
+    /**
+     * The number of longs needed to hold a codeword and a data word respectively.
+     */
+    private final int codewordLongs, dataLongs;
+
+    /**
+     * Whether the code works without matrices, in which case the matrices and correction table are null.
+     */
+    private final boolean implicit;
+
+    /**
+     * The generator matrix, with one row of dimension bits for each bit of a codeword.
+     */
+    private final long[][] generator;
+
+    /**
+     * The error correction matrix, with one row of word length bits for each parity bit.
+     */
+    private final long[][] errorCorrectionMatrix;
+
+    /**
+     * The decoder matrix, with one row of word length bits for each data bit.
+     */
+    private final long[][] decoderMatrix;
+
+    /**
+     * The columns of the error correction matrix as integer syndromes, indexed by codeword position.
+     */
+    private final int[] columnSyndromes;
+
+    /**
+     * Indexed by syndrome, the long of a packed codeword to correct and the mask to XOR it with.
+     * A syndrome of 0 maps onto a mask of 0 so that correction never needs to branch.
+     */
+    private final int[] correctionLongs;
+    private final long[] correctionMasks;
+
+    /**
+     * Multiplies the rows of the matrices by packed words.
+     */
+    private final IMatrixMultiplier multiplier;
+
+    /**
+     * Encodes and decodes 64 words of this code at a time in bit-sliced form, constructed when first asked for.
+     */
+    private volatile BitSlicedCodec slicedCodec;
+
+    /**
+     * Gives the shared code for a value of r, constructing it the first time it is asked for.
+     * @param val The 'r' value of the code.
+     * @return The code for that value of r.
+     */
+    public static HammingCode forValue(int val) {
+        return REGISTRY.computeIfAbsent(val, v -> v > IMPLICIT_THRESHOLD && v > 6 ? new HammingCode(v, null) : new HammingCode(v));
+    }
+
+    /**
+     * Constructs a code outside of the registry, such as to compare matrix multipliers.
+     * Encoders and decoders should use {@link #forValue(int)} instead.
+     * @param val The 'r' value of the code.
+     */
+    public HammingCode(int val) {
+        this(val, MatrixMultipliers.forRowLongs(BitPacking.wordsFor((1 << val) - 1)));
+    }
+
+    /**
+     * @param val The 'r' value of the code.
+     * @param multiplier The multiplier for the rows of the matrices, or null to construct a code without
+     *                   matrices. Codes whose codewords fit in a single long always need a multiplier.
+     */
+    public HammingCode(int val, IMatrixMultiplier multiplier) {
+
+        if(val < 2 || val > 30)
+            throw new IllegalArgumentException("Value for length and dimension must be between 2 and 30.");
+
+        //set the values of the word length, dimension and number of parity bits
+        this.wordLength = (1 << val) - 1;
+        this.dimension = this.wordLength - val;
+        this.parityLength = val;
+        this.multiplier = multiplier;
+        this.implicit = multiplier == null;
+
+        this.codewordLongs = BitPacking.wordsFor(this.wordLength);
+        this.dataLongs = BitPacking.wordsFor(this.dimension);
+
+        if(this.implicit && this.fitsInLong())
+            throw new IllegalArgumentException("Codes whose codewords fit in a single long need a matrix multiplier.");
+
+        //codes without matrices find everything from the indices of the bits instead
+        if(this.implicit) {
+            this.generator = null;
+            this.errorCorrectionMatrix = null;
+            this.decoderMatrix = null;
+            this.columnSyndromes = null;
+            this.correctionLongs = null;
+            this.correctionMasks = null;
+            return;
+        }
+
+        this.generator = new long[this.wordLength][this.dataLongs];
+        this.errorCorrectionMatrix = new long[this.parityLength][this.codewordLongs];
+        this.decoderMatrix = new long[this.dimension][this.codewordLongs];
+
+        this.constructMatrices();
+
+        this.columnSyndromes = new int[this.wordLength];
+        this.correctionLongs = new int[1 << this.parityLength];
+        this.correctionMasks = new long[1 << this.parityLength];
+
+        this.constructCorrectionTable();
+    }
+
+    /**
+     * Reads the columns of the error correction matrix as syndromes and builds the table from each
+     * syndrome to the bit that a single error with that syndrome would have flipped.
+     */
+    private void constructCorrectionTable() {
+
+        for(int position = 0; position < this.wordLength; position++) {
+
+            //the syndrome a single error at this position would produce
+            for(int p = 0; p < this.parityLength; p++)
+                this.columnSyndromes[position] |= BitPacking.getBit(this.errorCorrectionMatrix[p], position) << p;
+
+            this.correctionLongs[this.columnSyndromes[position]] = position >>> 6;
+            this.correctionMasks[this.columnSyndromes[position]] = 1L << position;
+        }
+    }
+
+    /**
+     * Fills in the rows of the generator, error correction and decoder matrices.
+     * Parity bits sit at the positions 2^i - 1, and the parity bit for 2^i checks every position whose
+     * index plus one has bit i set.
+     */
+    private void constructMatrices() {
+
+        //the index of the next data bit to be placed in the codeword
+        int dataBitIndex = 0;
+
+        for(int position = 0; position < this.wordLength; position++) {
+
+            //the error correction row for each parity bit includes this position if the position
+            //plus one has the bit of that parity bit set
+            for(int p = 0; p < this.parityLength; p++) {
+                if((((position + 1) >>> p) & 1) == 1)
+                    BitPacking.setBit(this.errorCorrectionMatrix[p], position);
+            }
+
+            //data bits are copied straight into the codeword by the generator and straight
+            //back out of it by the decoder
+            if(!isParityPosition(position)) {
+                BitPacking.setBit(this.generator[position], dataBitIndex);
+                BitPacking.setBit(this.decoderMatrix[dataBitIndex], position);
+                dataBitIndex++;
+            }
+        }
+
+        //a parity row of the generator covers every data bit that the parity bit checks
+        for(int p = 0; p < this.parityLength; p++) {
+
+            dataBitIndex = 0;
+
+            for(int position = 0; position < this.wordLength; position++) {
+                if(!isParityPosition(position)) {
+                    if((((position + 1) >>> p) & 1) == 1)
+                        BitPacking.setBit(this.generator[(1 << p) - 1], dataBitIndex);
+                    dataBitIndex++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines if the given position in a codeword holds a parity bit.
+     * @param position The index in the codeword.
+     * @return True if the position holds a parity bit, false if it holds a data bit.
+     */
+    public static boolean isParityPosition(int position) {
+        return ((position + 1) & position) == 0;
+    }
+
+    /**
+     * Encodes a packed data word into a packed codeword.
+     * @param data The data word, of dimension bits.
+     * @param codeword The array to write the codeword into, of word length bits.
+     */
+    public void encode(long[] data, long[] codeword) {
+
+        if(this.implicit) {
+            this.encodeImplicitly(data, codeword);
+            return;
+        }
+
+        //each long of the codeword is the product of the next 64 rows of the generator matrix
+        for(int i = 0; i < this.codewordLongs; i++)
+            codeword[i] = this.multiplier.multiplyRows(this.generator, i << 6, Math.min(64, this.wordLength - (i << 6)), data);
+    }
+
+    /**
+     * Calculates the syndrome of a packed codeword, which is the index plus one of a single bit error
+     * or 0 if no error is detected.
+     * @param codeword The codeword to check.
+     * @return The syndrome of the codeword.
+     */
+    public int syndrome(long[] codeword) {
+
+        if(this.implicit)
+            return this.syndromeImplicitly(codeword);
+
+        return (int) this.multiplier.multiplyRows(this.errorCorrectionMatrix, 0, this.parityLength, codeword);
+    }
+
+    /**
+     * Corrects a single bit error in a packed codeword if one is detected, by looking up the
+     * correction mask for its syndrome.
+     * @param codeword The codeword to correct in place.
+     * @return The syndrome of the codeword before correction.
+     */
+    public int correct(long[] codeword) {
+
+        int result = this.syndrome(codeword);
+
+        this.correct(codeword, result);
+
+        return result;
+    }
+
+    /**
+     * Corrects a packed codeword whose syndrome is already known, such as one built up as its bits arrived.
+     * @param codeword The codeword to correct in place.
+     * @param syndrome The syndrome of the codeword.
+     */
+    public void correct(long[] codeword, int syndrome) {
+
+        if(this.implicit) {
+            if(syndrome != 0)
+                BitPacking.flipBit(codeword, syndrome - 1);
+        } else {
+            codeword[this.correctionLongs[syndrome]] ^= this.correctionMasks[syndrome];
+        }
+    }
+
+    /**
+     * Decodes a packed codeword back into its packed data word.
+     * @param codeword The codeword to decode.
+     * @param data The array to write the data word into.
+     */
+    public void decode(long[] codeword, long[] data) {
+
+        if(this.implicit) {
+            this.decodeImplicitly(codeword, data);
+            return;
+        }
+
+        for(int i = 0; i < this.dataLongs; i++)
+            data[i] = this.multiplier.multiplyRows(this.decoderMatrix, i << 6, Math.min(64, this.dimension - (i << 6)), codeword);
+    }
+
+    /**
+     * Encodes a packed data word without the generator matrix, by copying the data bits into place and
+     * then setting each parity bit from the syndrome of the codeword with its parity bits still clear.
+     */
+    private void encodeImplicitly(long[] data, long[] codeword) {
+
+        for(int i = 0; i < this.codewordLongs; i++)
+            codeword[i] = 0L;
+
+        //the data bits between the parity bits at 2^p - 1 and 2^(p+1) - 1 are a run of 2^p - 1 bits
+        for(int p = 1; p < this.parityLength; p++)
+            BitPacking.copyBits(data, (1 << p) - 1 - p, codeword, 1 << p, (1 << p) - 1);
+
+        int parity = this.syndromeImplicitly(codeword);
+
+        for(int p = 0; p < this.parityLength; p++) {
+            if(((parity >>> p) & 1) == 1)
+                BitPacking.setBit(codeword, (1 << p) - 1);
+        }
+    }
+
+    /**
+     * Calculates the syndrome of a packed codeword without the error correction matrix, as the XOR of the
+     * index plus one of every set bit. For a set bit at position i of the long starting at index b, the
+     * lowest 6 bits of the index plus one come from i + 1 and the rest come from b, or from b + 64 for the
+     * top bit of the long, so each long only needs a handful of bit counts.
+     */
+    private int syndromeImplicitly(long[] codeword) {
+
+        int result = 0;
+
+        for(int k = 0; k < this.codewordLongs; k++) {
+
+            long word = codeword[k];
+
+            if(word == 0L)
+                continue;
+
+            for(int p = 0; p < LOW_INDEX_MASKS.length; p++)
+                result ^= (Long.bitCount(word & LOW_INDEX_MASKS[p]) & 1) << p;
+
+            if((Long.bitCount(word & Long.MAX_VALUE) & 1) == 1)
+                result ^= k << 6;
+
+            if(word < 0L)
+                result ^= (k + 1) << 6;
+        }
+
+        return result;
+    }
+
+    /**
+     * Decodes a packed codeword without the decoder matrix, by copying the runs of data bits back out.
+     */
+    private void decodeImplicitly(long[] codeword, long[] data) {
+
+        for(int i = 0; i < this.dataLongs; i++)
+            data[i] = 0L;
+
+        for(int p = 1; p < this.parityLength; p++)
+            BitPacking.copyBits(codeword, 1 << p, data, (1 << p) - 1 - p, (1 << p) - 1);
+    }
+
+    /**
+     * Encodes a data word held in a single long, for codes whose codewords fit in one long.
+     * @param data The data word.
+     * @return The codeword.
+     */
+    public long encode(long data) {
+
+        long codeword = 0L;
+
+        for(int i = 0; i < this.wordLength; i++)
+            codeword |= (long) (Long.bitCount(this.generator[i][0] & data) & 1) << i;
+
+        return codeword;
+    }
+
+    /**
+     * Calculates the syndrome of a codeword held in a single long.
+     * @param codeword The codeword to check.
+     * @return The syndrome of the codeword.
+     */
+    public int syndrome(long codeword) {
+
+        int result = 0;
+
+        for(int p = 0; p < this.parityLength; p++)
+            result |= (Long.bitCount(this.errorCorrectionMatrix[p][0] & codeword) & 1) << p;
+
+        return result;
+    }
+
+    /**
+     * Corrects a single bit error in a codeword held in a single long.
+     * @param codeword The codeword to correct.
+     * @return The corrected codeword.
+     */
+    public long correct(long codeword) {
+        return codeword ^ this.correctionMasks[this.syndrome(codeword)];
+    }
+
+    /**
+     * Decodes a codeword held in a single long back into its data word.
+     * @param codeword The codeword to decode.
+     * @return The data word.
+     */
+    public long decode(long codeword) {
+
+        long data = 0L;
+
+        for(int i = 0; i < this.dimension; i++)
+            data |= (long) (Long.bitCount(this.decoderMatrix[i][0] & codeword) & 1) << i;
+
+        return data;
+    }
+
+    /**
+     * Determines if a whole codeword fits into one long, so the single long methods can be used.
+     * @return True if the word length is at most 64 bits.
+     */
+    public boolean fitsInLong() {
+        return this.wordLength <= 64;
+    }
+
+    /**
+     * Gives the syndrome that a single error at the given position of a codeword would produce.
+     * @param position The index in the codeword.
+     * @return The column of the error correction matrix at that position as a syndrome.
+     */
+    public int getColumnSyndrome(int position) {
+        return this.implicit ? position + 1 : this.columnSyndromes[position];
+    }
+
+    public BitSlicedCodec getSlicedCodec() {
+
+        //the codec never changes, so constructing it twice on different threads does no harm
+        if(this.slicedCodec == null)
+            this.slicedCodec = new BitSlicedCodec(this);
+
+        return this.slicedCodec;
+    }
+
+    public boolean isImplicit() {
+        return implicit;
+    }
+
+    public int getWordLength() {
+        return wordLength;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int getParityLength() {
+        return parityLength;
+    }
+
+    public int getCodewordLongs() {
+        return codewordLongs;
+    }
+
+    public int getDataLongs() {
+        return dataLongs;
+    }
+}
@@ -1,7 +1,6 @@
 package HammingCoding.HammingModules;
 
 import java.util.Arrays;
-import java.util.HashMap;
 
 /**
  * Created by bnjhope on 28/10/16.
@@ -24,46 +23,82 @@ public class HammingDecoder {
     private int interleaveHeight;
 
     /**
-     * The matrix used for correcting errors when they are read in.
+     * The shared Hamming code that holds the error correction and decoder matrices.
      */
-    private char[][] errorCorrectionMatrix;
+    private HammingCode code;
 
     /**
-     * The matrix used for decoding corrected values.
+     * Buffers for a packed codeword and its packed decoded word, reused for every conversion.
      */
-    private char[][] decoderMatrix;
+    private long[] codewordBuffer, dataBuffer;
 
     /**
      * Manages the interleaving process.
      */
     private InterleavingManager interleaveManager;
 
+    /**
+     * The packed interleaved bits of the table being decoded, which each codeword is read straight out of.
+     */
+    private long[] streamBuffer;
+
+    /**
+     * Decodes 64 words at a time in bit-sliced form, along with the buffers for codeword and syndrome slices. They
+     * are only set up the first time a table is decoded in bit-sliced form, as the codeword slices take a long for
+     * every bit of a group of 64 codewords, which is megabytes for the long implicit codes that may never use them.
+     */
+    private BitSlicedCodec slicedCodec;
+    private long[] codeSlices, syndromeSlices;
+
     /**
      * The number of errors detected in the decoding procedure.
      */
     private int errorCount;
 
     /**
-     * Maps a codeword to its corresponding word if it has previously been constructed.
+     * The syndrome of each codeword in the last table decoded, or in the last table of the last frame decoded,
+     * reused between calls.
      */
-    private HashMap<String, String> existingCodes;
+    private int[] syndromes;
 
-    public HammingDecoder(int val, int interleaveHeight){
-        this.existingCodes = new HashMap();
+    /**
+     * Maps a packed codeword to its corresponding packed word if it has previously been constructed, or null until
+     * it is first needed.
+     */
+    private ICodewordCache existingCodes;
+
+    /**
+     * The shared residual error table for scoring error patterns, fetched the first time it is used.
+     */
+    private ResidualErrorTable residualErrorTable;
+
+    /**
+     * The error pattern of each row of the table, gathered when scoring with the residual error table.
+     */
+    private int[] rowPatterns;
 
+    /**
+     * For each row of the table with an error in the sparse path, the number of errors, the syndrome built up
+     * and the number of errors in data bits; and the rows that have errors.
+     */
+    private int[] rowErrors, rowSyndromes, rowDataErrors, touchedRows;
 
+    public HammingDecoder(int val, int interleaveHeight){
         //sets the values of dimension and word length
         this.calculateLengthAndDimension(val);
 
         //sets the interleave height from the given arguments
         this.interleaveHeight = interleaveHeight;
+        this.syndromes = new int[interleaveHeight];
 
         //instantiate the interleaving manager from the value given by the file name
         this.interleaveManager = new InterleavingManager(this.interleaveHeight, this.wordlength);
+        this.streamBuffer = new long[BitPacking.wordsFor(this.interleaveHeight * this.wordlength)];
 
-        //construct the error correction and decoder matrices using the values for word length
-        //and dimension
-        this.constructMatrices();
+        //fetch the shared code for this value of r and setup the buffers used to convert words with it
+        this.code = HammingCode.forValue(val);
+        this.codewordBuffer = new long[this.code.getCodewordLongs()];
+        this.dataBuffer = new long[this.code.getDataLongs()];
     }
 
     /**
@@ -77,287 +112,304 @@ public class HammingDecoder {
         //reset the error count
         this.errorCount = 0;
 
-        //the interleaving manager needs to deal with the input string
-        String interleaveOutput = this.interleaveManager.decode(encodedValue), outputResult = "";
+        //the decoded words of every row one after another
+        StringBuilder outputResult = new StringBuilder(this.interleaveHeight * this.dimension);
 
         //an array to keep the code words that we're reading in and the decoded keyword we have as a result
         String codewords[] = new String[this.interleaveHeight], correctedWords[] = new String[this.interleaveHeight], decodedWords[] = new String[this.interleaveHeight];
 
+        //pack the received bits once, and work out the syndrome of every row in the order the bits arrived
+        BitPacking.pack(encodedValue, this.streamBuffer);
+        this.accumulateSyndromes();
+
         for(int i = 0; i < this.interleaveHeight; i++) {
-            codewords[i] = interleaveOutput.substring(0, wordlength);
-            interleaveOutput = interleaveOutput.substring(wordlength);
-            correctedWords[i] = this.checkForErrors(codewords[i]);
-            decodedWords[i] = this.decodeCorrectedCode(correctedWords[i]);
-            outputResult += decodedWords[i];
+
+            //read the codeword of the row straight out of the interleaved stream
+            this.readCodeword(i);
+            codewords[i] = BitPacking.unpack(this.codewordBuffer, this.wordlength);
+
+            //correct the word with its syndrome, and if errors were found then increase the error count
+            this.code.correct(this.codewordBuffer, this.syndromes[i]);
+            if(this.syndromes[i] != 0)
+                this.errorCount++;
+
+            correctedWords[i] = BitPacking.unpack(this.codewordBuffer, this.wordlength);
+            decodedWords[i] = this.decodeBuffer();
+            outputResult.append(decodedWords[i]);
         }
 
-        result = new DecodingResult(this.wordlength, this.interleaveHeight, outputResult, decodedWords, codewords, correctedWords, encodedValue);
+        result = new DecodingResult(this.wordlength, this.interleaveHeight, outputResult.toString(), decodedWords, codewords, correctedWords, encodedValue);
 
         return result;
     }
 
     /**
-     * Calculates and stores the value of the word length and dimension using the value given.
-     * @param val The value with which the word length and dimension should be calculated.
+     * Undoes the interleaving of a packed stream of bits and decodes the whole table in bit-sliced form,
+     * correcting any errors that are detected.
+     * @param stream The packed interleaved bits received from the channel.
+     * @param dataSlices The array to write the dimension slices of each group of 64 rows into in turn.
+     * @return The number of codewords in which an error was detected.
      */
-    private void calculateLengthAndDimension(int val) {
+    public int decodeSliced(long[] stream, long[] dataSlices) {
+        return this.decodeFrame(stream, dataSlices, 1, null);
+    }
 
-        //stores the value of 2^val, since both the length and the dimension use it
-        //to calculate their values.
-        int twoPower = 0;
+    /**
+     * Decodes a frame of whole interleaving tables in one call, each held in its own block of one packed frame
+     * laid out as by {@link HammingEncoder#encodeFrame}, correcting any errors that are detected.
+     * @param frame The packed interleaved bits of every table received from the channel.
+     * @param dataSlices The array to write the data slices of each table into in turn.
+     * @param blocks The number of tables in the frame.
+     * @param detectedErrors The array to write the number of codewords of each table in which an error was
+     *                       detected into, or null if they are not needed.
+     * @return The number of codewords in the whole frame in which an error was detected.
+     */
+    public int decodeFrame(long[] frame, long[] dataSlices, int blocks, int[] detectedErrors) {
 
-        //if the provided value is not greater than or equal to 2 then we must quit the program.
-        //otherwise, set the value of twoPower to 2^val cast as an integer.
-        if(val < 2) {
-            System.err.println("Value for length and dimension must be greater than or equal to 2.\nExiting.");
-            System.exit(0);
-        } else
-            twoPower = (int) Math.pow(2, (double) val);
+        int groups = BitSlicedCodec.groupsFor(this.interleaveHeight), blockBits = BitPacking.wordsFor(this.interleaveHeight * this.wordlength) << 6;
 
-        //set the values of the word length and the dimension.
-        this.wordlength = twoPower - 1;
-        this.dimension = twoPower - val - 1;
+        //fetch the bit-sliced codec and setup a slice buffer for every group of 64 rows of the table
+        if(this.codeSlices == null) {
+            this.slicedCodec = this.code.getSlicedCodec();
+            this.codeSlices = new long[groups * this.wordlength];
+            this.syndromeSlices = new long[this.wordlength - this.dimension];
+        }
 
-    }
+        this.errorCount = 0;
 
-    /**
-     * Checks a word from the file for errors and corrects them if it detects that there are any.
-     * @param wordToCheck The word to check for errors.
-     * @return The word given with any error corrections if any are detected.
-     */
-    private String checkForErrors(String wordToCheck) {
+        for(int block = 0; block < blocks; block++) {
+
+            //the number of codewords with an error in this table
+            int blockErrors = 0;
+
+            this.interleaveManager.decodeSlices(frame, block * blockBits, this.codeSlices);
+
+            //only the syndromes of the last table are kept, so they are only cleared for it
+            boolean lastBlock = block == blocks - 1;
 
-        //the word converted into a character array.
-        char[] wordArray = wordToCheck.toCharArray();
+            if(lastBlock)
+                Arrays.fill(this.syndromes, 0);
 
-        //holds the errors when detected and their positions
-        char[] syndrome = new char[this.wordlength - this.dimension];
+            for(int group = 0; group < groups; group++) {
+                this.slicedCodec.syndrome(this.codeSlices, group * this.wordlength, this.syndromeSlices);
 
-        //the sum of the values after the syndrome matrix has been determined
-        int syndromeSum = 0;
+                long detected = this.slicedCodec.correct(this.codeSlices, group * this.wordlength, this.syndromeSlices);
+                blockErrors += Long.bitCount(detected);
 
-        //fill in the syndrome matrix by multiplying the error correction matrix and the given word
-        for(int i = 0; i < syndrome.length; i++) {
-            syndrome[i] = this.multiplyRows(this.errorCorrectionMatrix[i], wordArray);
-            if(syndrome[i] != '0') {
-                syndromeSum += Math.pow(2, i);
+                //keep the syndrome of every row of the last table in which an error was detected
+                if(lastBlock)
+                    this.recordSyndromes(group, detected);
+
+                this.slicedCodec.decode(this.codeSlices, group * this.wordlength, dataSlices, (block * groups + group) * this.dimension);
             }
 
-        }
+            if(detectedErrors != null)
+                detectedErrors[block] = blockErrors;
 
-        //if errors were found then increase the error count and correct the error
-        if(syndromeSum != 0) {
-            this.errorCount++;
-            wordArray[syndromeSum - 1] = (wordArray[syndromeSum - 1] == '0') ? '1' : '0';
+            this.errorCount += blockErrors;
         }
 
-        return new String(wordArray);
+        return this.errorCount;
     }
 
     /**
-     * Decodes an error corrected word so it can be written to the file.
-     * @param bitsToDecode The string of bits to decode.
-     * @return The decode value.
+     * Counts the data bits that would be left wrong after decoding a table with the given error pattern, using one
+     * lookup in the shared residual error table per codeword instead of decoding them. Only codes with r up to
+     * {@link ResidualErrorTable#MAX_VALUE} have a table.
+     * @param stream The packed error pattern of the table, in the order its bits are transmitted.
+     * @return The number of data bits that would be left wrong.
      */
-    private String decodeCorrectedCode(String bitsToDecode) {
-
-        //the result that is either found in the existing codes map or
-        //is calculated
-        String result;
-
-        if(this.existingCodes.containsKey(bitsToDecode)) {
-            result = this.existingCodes.get(bitsToDecode);
-        } else {
-            //an array of bits that are calculated through matrix multiplacation
-            //and the bits to decode in array form
-            char[] decodeArray = new char[dimension], wordArray = bitsToDecode.toCharArray();
-
-            //multiply every row in the decoder matrix with the word to get the decoded
-            //value as a matrix of bits
-            for(int i = 0; i < this.dimension; i++) {
-                decodeArray[i] = this.multiplyRows(this.decoderMatrix[i], wordArray);
-            }
+    public int countResidualErrors(long[] stream) {
 
-            result = new String(decodeArray);
-
-            this.existingCodes.put(bitsToDecode, result);
+        if(this.residualErrorTable == null) {
+            this.residualErrorTable = ResidualErrorTable.forValue(this.wordlength - this.dimension);
+            this.rowPatterns = new int[this.interleaveHeight];
         }
 
-        return result;
+        return this.residualErrorTable.countResidualErrors(stream, this.interleaveHeight, this.rowPatterns);
     }
 
     /**
-     * Perform matrix multiplication modulo 2 on two given rows.
-     * @param row1 The first to perform the multiplication on.
-     * @param row2 The second row to perform the multiplication on.
-     * @return The result of the multiplication modulo 2, given as a char.
+     * Counts the data bits that would be left wrong after decoding a table with errors at the given positions.
+     * Each position is mapped back to its codeword and bit, and only the codewords with an error are corrected,
+     * so codewords that arrive untouched cost nothing.
+     * @param positions The sorted positions of the errors in the interleaved stream.
+     * @param count The number of positions.
+     * @return The number of data bits that would be left wrong.
      */
-    private char multiplyRows(char[] row1, char[] row2) {
+    public int countResidualErrors(int[] positions, int count) {
 
-        //the step between a digit and its ascii representation
-        final int asciiStep = 48;
+        if(this.touchedRows == null) {
+            this.rowErrors = new int[this.interleaveHeight];
+            this.rowSyndromes = new int[this.interleaveHeight];
+            this.rowDataErrors = new int[this.interleaveHeight];
+            this.touchedRows = new int[this.interleaveHeight];
+        }
 
-        //the sum of the bits resulting from the matrix multiplication
-        int sum = 0;
+        //the number of rows with an error
+        int touchedCount = 0;
 
-        for(int i = 0; i < row1.length; i++) {
-            sum += Character.getNumericValue(row1[i]) * Character.getNumericValue(row2[i]);
-        }
+        for(int i = 0; i < count; i++) {
 
-        return(char) ((sum % 2) + asciiStep);
-    }
+            int row = this.interleaveManager.rowOf(positions[i]), column = this.interleaveManager.columnOf(positions[i]);
 
-    /**
-     * Constructs the error correction and decoder matrices from the values fetched by the file name of the input file.
-     */
-    private void constructMatrices() {
+            if(this.rowErrors[row]++ == 0)
+                this.touchedRows[touchedCount++] = row;
 
-        //instantiate the error correction matrix with as many rows as there are parity bits
-        //and a word length number of columns
-        this.errorCorrectionMatrix = new char[this.wordlength - this.dimension][wordlength];
+            this.rowSyndromes[row] ^= this.code.getColumnSyndrome(column);
 
-        //instantiate the decoder correction matrx with as many rows as there are data bits (i.e the dimension)
-        //and a word length number of columns
-        this.decoderMatrix = new char[this.dimension][wordlength];
+            if(!HammingCode.isParityPosition(column))
+                this.rowDataErrors[row]++;
+        }
+
+        int errorCount = 0;
 
-        //create a character array with 'p' at the locations in the array where a parity bit would be located
-        //and a '1' at every data bit location
-        char[] word = createHammingString();
+        for(int i = 0; i < touchedCount; i++) {
 
-        //represents a row in the matrix table - will be converted to a character array before being added.
-        String result;
+            int row = this.touchedRows[i], syndrome = this.rowSyndromes[row], residualErrors = this.rowDataErrors[row];
 
-        //determines if the current bit that we are checking influences the parity bit or not
-        boolean isParity;
+            //a non-zero syndrome flips the bit one before it, which either removes an error or adds one
+            if(syndrome != 0 && !HammingCode.isParityPosition(syndrome - 1)) {
+                int corrected = this.interleaveManager.positionOf(row, syndrome - 1);
+                residualErrors += Arrays.binarySearch(positions, 0, count, corrected) >= 0 ? -1 : 1;
+            }
 
-        //counts the number of bits that have been checked for bits that influence parity,
-        //holds the power of 2,
-        //provides steppers through the rows for the decoder matrix and the error correction matrix
-        int parityStepper, powerVal, decoderMatrixStepper = 0, errCorrectionStepper = 0;
+            errorCount += residualErrors;
 
-        //the character that represents a parity bit in the character array
-        char parityBit = 'p';
+            //clear the row ready for the next table
+            this.rowErrors[row] = 0;
+            this.rowSyndromes[row] = 0;
+            this.rowDataErrors[row] = 0;
+        }
 
-        //for every character in this character array
-        for(int i = 0; i < word.length; i++) {
+        return errorCount;
+    }
 
-            //if the character at the current index in the array is a parity bit then add to the error-correction matrix
-            //if not then add to the decoder matrix
-            if(word[i] == parityBit) {
+    /**
+     * Gives the syndrome of a codeword from the last table that was decoded, which for a frame is its last table.
+     * Counting the residual errors of a table does not decode it, so it leaves the syndromes as they were.
+     * @param row The row of the interleaving table.
+     * @return The syndrome, which is 0 if no error was detected in that row.
+     */
+    public int getSyndrome(int row) {
+        return this.syndromes[row];
+    }
 
-                //get the power which will be used to determine which bits in the array we need to determine
-                //each bit in a generator row
-                powerVal = (int) (Math.log(i + 1) / Math.log(2));
+    /**
+     * Calculates and stores the value of the word length and dimension using the value given.
+     * @param val The value with which the word length and dimension should be calculated.
+     */
+    private void calculateLengthAndDimension(int val) {
+
+        //stores the value of 2^val, since both the length and the dimension use it
+        //to calculate their values.
+        int twoPower = 0;
+
+        //if the provided value is not greater than or equal to 2 then we must quit the program.
+        //otherwise, set the value of twoPower to 2^val cast as an integer.
+        if(val < 2) {
+            System.err.println("Value for length and dimension must be greater than or equal to 2.\nExiting.");
+            System.exit(0);
+        } else
+            twoPower = (int) Math.pow(2, (double) val);
 
-                //set isParity to true, reset the parity stepper and set the result string as blank
-                isParity = true;
+        //set the values of the word length and the dimension.
+        this.wordlength = twoPower - 1;
+        this.dimension = twoPower - val - 1;
 
-                parityStepper = 0;
+    }
 
-                result = "";
+    /**
+     * Stores the syndromes of the rows of a group of the table being decoded in bit-sliced form, out of the syndrome
+     * slices of the group. Rows in which no error was detected are left at 0.
+     * @param group The group of 64 rows of the table.
+     * @param detected The mask of the lanes of the group in which an error was detected.
+     */
+    private void recordSyndromes(int group, long detected) {
 
-                //for all the remaining characters in the word array
-                for(int j = i; j < word.length; j++) {
+        for(long lanes = detected; lanes != 0L; lanes &= lanes - 1) {
 
-                    //if the character at the position is not a parity bit then check if it influences the value
-                    //of the parity bit and add to the matrix row depending on that
-                    if(word[j] != parityBit) {
+            int lane = Long.numberOfTrailingZeros(lanes), row = group * BitSlicedCodec.LANES + lane;
 
-                        //if this bit does influence the value of the parity bit then add 1 to the row
-                        if(isParity) {
-                            result += '1';
+            //the lanes past the last row of the table hold no codeword
+            if(row < this.interleaveHeight)
+                this.syndromes[row] = this.slicedCodec.getSyndrome(this.syndromeSlices, lane);
+        }
+    }
 
-                        //otherwise add 0
-                        } else {
-                            result += '0';
-                        }
+    /**
+     * Works out the syndrome of every row of the packed interleaved stream in the order its bits arrived, column
+     * by column, adding the syndrome of a single error at a column to every row with a bit set in that column.
+     */
+    private void accumulateSyndromes() {
 
-                    //if the character at this position is a parity bit then add a 0 to the string, unless it is the
-                        //first character of the checking position
-                    } else {
-                        if(j == i)
-                            result += '1';
-                        else
-                            result += '0';
-                    }
+        Arrays.fill(this.syndromes, 0);
 
-                    //if we have reached the end of a section in the word to scan for parity bits
-                    //then flip the boolean which determines that we need to use bits that we are
-                    //currently checking for the parity bit
-                    if(++parityStepper == Math.pow(2, powerVal)) {
-                        parityStepper = 0;
-                        isParity = !isParity;
-                    }
+        for(int column = 0; column < this.wordlength; column++) {
 
-                }
+            int columnSyndrome = this.code.getColumnSyndrome(column);
 
-                if(result.length() != this.wordlength)
-                    //fill the start of the row with 0s if it is not as long as the word length specifies
-                    result = this.fillStartWith0s(result);
+            //each column is a run of height bits in the stream, which is read 64 rows at a time
+            for(int base = 0; base < this.interleaveHeight; base += 64) {
 
-                this.errorCorrectionMatrix[errCorrectionStepper++] = result.toCharArray();
+                long bits = BitPacking.readBits(this.streamBuffer, this.interleaveManager.positionOf(base, column), Math.min(64, this.interleaveHeight - base));
 
-            //if the bit being checked is not a parity bit then generat
-            } else {
-                this.decoderMatrix[decoderMatrixStepper++] = this.generateDecodeRow(i);
+                while(bits != 0L) {
+                    this.syndromes[base + Long.numberOfTrailingZeros(bits)] ^= columnSyndrome;
+                    bits &= bits - 1;
+                }
             }
         }
-
     }
+
     /**
-     * Fills the beginning of a given string with 0s until it reaches the length of the dimension.
-     * @param str The string to complete with 0s at the beginning
-     * @return The string with 0s filled in at the beginning.
+     * Reads the codeword of a row straight out of the packed interleaved stream into the codeword buffer.
+     * @param row The row of the interleaving table.
      */
-    private String fillStartWith0s(String str) {
+    private void readCodeword(int row) {
 
-        while(str.length() < this.wordlength) {
-            str = '0' + str;
-        }
+        Arrays.fill(this.codewordBuffer, 0L);
 
-        return str;
+        for(int column = 0; column < this.wordlength; column++) {
+            if(BitPacking.getBit(this.streamBuffer, this.interleaveManager.positionOf(row, column)) != 0)
+                BitPacking.setBit(this.codewordBuffer, column);
+        }
     }
 
-
     /**
-     * Gives a string of 0s but with a 1 at the given index for when we need to add a row to the decoder matrix.
-     * @param index The index where the 1 is located in the row.
-     * @return An array of 0s with 1 at the given index.
+     * Decodes the error corrected codeword in the codeword buffer so it can be written to the file.
+     * @return The decoded value.
      */
-    private char[] generateDecodeRow(int index) {
+    private String decodeBuffer() {
 
-        char[] wordToReturn = new char[wordlength];
+        //if it has not been seen before then multiply every row in the decoder matrix with the packed word
+        //to get the decoded value, and remember it
+        if(!this.getExistingCodes().get(this.codewordBuffer, this.dataBuffer)) {
+            this.code.decode(this.codewordBuffer, this.dataBuffer);
+            this.getExistingCodes().put(this.codewordBuffer, this.dataBuffer);
+        }
 
-        Arrays.fill(wordToReturn, '0');
+        return BitPacking.unpack(this.dataBuffer, this.dimension);
+    }
 
-        wordToReturn[index] = '1';
+    public int getWordLength() {
+        return wordlength;
+    }
 
-        return wordToReturn;
+    public int getDimension() {
+        return dimension;
     }
 
     /**
-     * Creates a character array with '1' placed on data parts and 'p' placed on parity bit positions
-     * @return A character array with '1' at data bits and 'p' at parity bits
+     * Gives the existing codes cache, which is only made the first time it is needed as a bounded cache for a long
+     * code takes megabytes, while only words converted one at a time use it.
+     * @return The cache, keyed by codewords and holding words.
      */
-    private char[] createHammingString() {
-
-        //how data and parity bits are represented in the array
-        char parityBit = 'p', dataBit = '1';
-
-        //stepper for the power of 2 so that each parity bit is filled in
-        int parityBitFiller = 0;
+    public ICodewordCache getExistingCodes() {
 
-        //the character array to be returned
-        char[] word = new char[this.wordlength];
+        if(this.existingCodes == null)
+            this.existingCodes = CodewordCaches.forWords(this.wordlength, this.dimension);
 
-        //fill the entire array with a '1' to denote a data bit, and then we fill
-        //all cells with index of (power of 2) - 1 with a p to differentiate.
-        Arrays.fill(word, dataBit);
-        while(Math.pow(2, parityBitFiller) < this.wordlength) {
-            word[((int) Math.pow(2, parityBitFiller++)) - 1] = parityBit;
-        }
-
-        return word;
+        return this.existingCodes;
     }
-
 }
@@ -1,7 +1,7 @@
 package HammingCoding.HammingModules;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.SplittableRandom;
 
 /**
  * Created by bnjhope on 20/10/16.
@@ -19,9 +19,27 @@ public class HammingEncoder {
     private int dimension;
 
     /**
-     * The generator matrix to be used by the encoder.
+     * The shared Hamming code that holds the generator matrix and performs the encoding.
      */
-    private char[][] generator;
+    private HammingCode code;
+
+    /**
+     * Buffers for a packed word and its packed codeword, reused for every conversion.
+     */
+    private long[] dataBuffer, codewordBuffer;
+
+    /**
+     * The packed interleaved bits of the table being encoded, which each codeword is written straight into.
+     */
+    private long[] streamBuffer;
+
+    /**
+     * Encodes 64 words at a time in bit-sliced form, along with the buffer it writes codeword slices into. Both are
+     * only set up the first time a table is encoded in bit-sliced form, as the buffer takes a long for every bit
+     * of a group of 64 codewords, which is megabytes for the long implicit codes that may never use it.
+     */
+    private BitSlicedCodec slicedCodec;
+    private long[] codeSlices;
 
     /**
      * The height of the interleaving table.
@@ -29,9 +47,10 @@ public class HammingEncoder {
     private int interleaveHeight;
 
     /**
-     * Maps a word to its corresponding codeword if it has previously been constructed.
+     * Maps a packed word to its corresponding packed codeword if it has previously been constructed, or null until
+     * it is first needed.
      */
-    private HashMap<String, String> existingCodes;
+    private ICodewordCache existingCodes;
 
     /**
      * Manages the interleaving process.
@@ -44,17 +63,60 @@ public class HammingEncoder {
     private Channel bitChannel;
 
     public HammingEncoder(int val, int interleaveHeight) {
-        //initialises the existing codes map
-        this.existingCodes = new HashMap();
-
         //calculate the length and the dimension for Hamming coder using the value provided.
         this.calculateLengthAndDimension(val);
 
+        //fetch the shared code for this value of r and setup the buffers used to convert words with it
+        this.code = HammingCode.forValue(val);
+        this.dataBuffer = new long[this.code.getDataLongs()];
+        this.codewordBuffer = new long[this.code.getCodewordLongs()];
+
         //set the value of the interleave height
         this.interleaveHeight = interleaveHeight;
 
+        //setup the channel for getting in new bits
+        this.bitChannel = new Channel(this.dimension);
+
         //initialises the interleave manager of this Hamming Encoder
         this.interleaveManager = new InterleavingManager(interleaveHeight, this.wordLength);
+        this.streamBuffer = new long[BitPacking.wordsFor(interleaveHeight * this.wordLength)];
+    }
+
+    /**
+     * Encodes a whole interleaving table of words given in bit-sliced form and interleaves the codewords
+     * into a packed stream of bits.
+     * @param dataSlices The dimension slices of each group of 64 rows of the table in turn.
+     * @param stream The array to write the packed interleaved bits into.
+     */
+    public void encodeSliced(long[] dataSlices, long[] stream) {
+        this.encodeFrame(dataSlices, stream, 1);
+    }
+
+    /**
+     * Encodes a frame of whole interleaving tables given in bit-sliced form in one call, interleaving each into
+     * its own block of one packed frame. Each block starts at a long boundary, so a frame is laid out as blocks
+     * of {@link BitPacking#wordsFor} the table's bits in longs.
+     * @param dataSlices The data slices of each table in turn, laid out for each as for encodeSliced.
+     * @param frame The array to write the packed interleaved bits of every table into.
+     * @param blocks The number of tables in the frame.
+     */
+    public void encodeFrame(long[] dataSlices, long[] frame, int blocks) {
+
+        int groups = BitSlicedCodec.groupsFor(this.interleaveHeight), blockBits = BitPacking.wordsFor(this.interleaveHeight * this.wordLength) << 6;
+
+        //fetch the bit-sliced codec and setup a slice buffer for every group of 64 rows of the table
+        if(this.codeSlices == null) {
+            this.slicedCodec = this.code.getSlicedCodec();
+            this.codeSlices = new long[groups * this.wordLength];
+        }
+
+        for(int block = 0; block < blocks; block++) {
+
+            for(int group = 0; group < groups; group++)
+                this.slicedCodec.encode(dataSlices, (block * groups + group) * this.dimension, this.codeSlices, group * this.wordLength);
+
+            this.interleaveManager.encodeSlices(this.codeSlices, 0, frame, block * blockBits);
+        }
     }
 
     /**
@@ -65,42 +127,42 @@ public class HammingEncoder {
         //the collection of encoding data to return.
         EncodingResult result;
 
-        //A buffer for all of the words form the channel to be stored,
-        //a buffer for where we put the encoded words before transferring them to the interleaver
-        //and a result from the interleave output.
-        String channelBuffer = "", inBuffer = "", interleaveOutput = "";
+        //A buffer for all of the words form the channel to be stored
+        StringBuilder channelBuffer = new StringBuilder(this.interleaveHeight * this.dimension);
 
-        //setup the channel for getting in new bits
-        this.bitChannel = new Channel(this.dimension);
-
-        //setup the gernator matrix
-        this.constructGeneratorMatrix();
+        //the result from the interleave output.
+        String interleaveOutput;
 
         //an array of the words that need to be encoded and an array of the result of these words becoming encoded
         String wordsToEncode[] = new String[this.interleaveHeight], codewords[] = new String[this.interleaveHeight];
 
+        //every bit of the stream is set by the codeword it belongs to
+        Arrays.fill(this.streamBuffer, 0L);
+
         //create as many rows as will fill the interleaving table
         for(int i = 0; i < this.interleaveHeight; i++) {
 
-            //get a bit input from the channel
-            wordsToEncode[i] = this.bitChannel.getBits();
+            //get a packed bit input from the channel and convert it into a hamming code
+            this.bitChannel.fillBits(this.dataBuffer);
+            this.encodeBuffer();
 
-            //adds the input from the channel into the buffer
-            channelBuffer += wordsToEncode[i];
+            //keep the word and the codeword as strings so they can be shown
+            wordsToEncode[i] = BitPacking.unpack(this.dataBuffer, this.dimension);
+            codewords[i] = BitPacking.unpack(this.codewordBuffer, this.wordLength);
 
-            //convert the codeword we just fetched into a hamming code
-            codewords[i] = this.convertToHamming(wordsToEncode[i]);
+            //adds the input from the channel into the buffer
+            channelBuffer.append(wordsToEncode[i]);
 
-            //add the codeword to the buffer before we add it to the interleaver
-            inBuffer += codewords[i];
+            //write the codeword straight into its column of the interleaved stream
+            this.interleaveCodeword(i);
 
         }
 
-        //perform interleaving on the buffer of bits
-        interleaveOutput = this.interleaveManager.encode(inBuffer);
+        //the interleaved stream is complete once every row has been written
+        interleaveOutput = BitPacking.unpack(this.streamBuffer, this.interleaveHeight * this.wordLength);
 
         //the collection of data to return to the channel.
-        result = new EncodingResult(this.wordLength, this.interleaveHeight, channelBuffer , wordsToEncode, codewords, interleaveOutput);
+        result = new EncodingResult(this.wordLength, this.interleaveHeight, channelBuffer.toString(), wordsToEncode, codewords, interleaveOutput);
 
         return result;
     }
@@ -130,201 +192,96 @@ public class HammingEncoder {
     }
 
     /**
-     * Constructs the generator matrix once the dimension and word length have been calculated.
+     * Writes the packed codeword in the codeword buffer straight into the positions its bits are sent at in the
+     * interleaved stream, so the table is never built row by row and read out again.
+     * @param row The row of the interleaving table the codeword belongs to.
      */
-    private void constructGeneratorMatrix() {
-
-        //initialise the generator matrix with the word length and dimension
-        this.generator = new char[wordLength][dimension];
-
-        //the word for which we base all of our Hamming calculations on
-        char[] word = createHammingString();
-
-        //a string of bits to add to the generator matrix
-        String generatorString;
-
-        //determines whether the bit in the array that we are checking influences the parity bit or not.
-        boolean isParity = false;
+    private void interleaveCodeword(int row) {
 
-        //the index of where a data bit is
-        int dataBitIndex = 0, parityStepper = 0, powerVal = 0;
+        for(int word = 0; word < this.codewordBuffer.length; word++) {
 
-        //create a row in the generator matrix for character in the word.
-        for(int i = 0; i < word.length; i++) {
+            long bits = this.codewordBuffer[word];
 
-            //if the current character that we are checking in the word is a parity bit then
-            //create the character array to add to the generator matrix in relation to this parity bit.
-            if(word[i] == 'p') {
-
-                //get the power which will be used to determine which bits in the array we need to determine
-                //each bit in a generator row
-                powerVal = (int) (Math.log(i + 1) / Math.log(2));
-
-                //set the parity stepper to true before going through the array
-                //as we take in the first characters
-                isParity = true;
-
-                //set the parity stepper to 0
-                parityStepper = 0;
-
-                //initialise a new generator string
-                generatorString = new String();
-
-                //for every character that comes after the current parity bit, determine if any of these data bits
-                //influence the value of the parity bit
-                for(int j = i; j < word.length; j++) {
-
-                    //if the current bit in the word is a data bit
-                    if(word[j] == '1') {
-
-                        //if this bit influences the parity check of the parity bit then add a one to the
-                        //string which we will add to the generator
-                        if(isParity) {
-                            generatorString += '1';
-
-                        //if this bit does not influence the parity bit then add a 0 to the generator row
-                        } else {
-                            generatorString += '0';
-                        }
-                    }
-
-                    //if we have reached the end of a section in the word to scan for parity bits
-                    //then flip the boolean which determines that we need to use bits that we are
-                    //currently checking for the parity bit
-                    if(++parityStepper == Math.pow(2, powerVal)) {
-                        parityStepper = 0;
-                        isParity = !isParity;
-                    }
-                }
-
-                //since we do not check the start of the word for later characters, but we know these
-                //will begin with 0, we can fill the beginning of a parity row in the generator matrix with
-                //0s if we know that after this process of calculating it that it is not as long as the dimension
-                if(generatorString.length() < dimension)
-                    generatorString = fillStartWith0s(generatorString);
-
-                //add this row to the generator matrix
-                this.generator[i] = generatorString.toCharArray();
-
-            //if it is a data bit then add a data bit row to the generator matrix
-            } else {
-                this.generator[i] = this.generateDataRow(dataBitIndex++);
+            //only the bits that are set need writing, as the stream starts out clear
+            while(bits != 0L) {
+                BitPacking.setBit(this.streamBuffer, this.interleaveManager.positionOf(row, (word << 6) + Long.numberOfTrailingZeros(bits)));
+                bits &= bits - 1;
             }
         }
-
     }
 
     /**
-     * Fills the beginning of a given string with 0s until it reaches the length of the dimension.
-     * @param str The string to complete with 0s at the beginning
-     * @return The string with 0s filled in at the beginning.
+     * Encodes the packed word in the data buffer into the codeword buffer.
      */
-    private String fillStartWith0s(String str) {
+    private void encodeBuffer() {
 
-        while(str.length() < dimension) {
-            str = '0' + str;
-        }
+        //if the word that needs to be converted to a Hamming code has already been seen before and so there is a code
+        //for it then fetch it from the existing codes cache instead of recalculating it.
+        //If this is the first time that it has been seen then we have to calculate it first.
+        if (!this.getExistingCodes().get(this.dataBuffer, this.codewordBuffer)) {
 
-        return str;
+            //multiply the word by the generator matrix and remember the resulting codeword
+            this.code.encode(this.dataBuffer, this.codewordBuffer);
+            this.getExistingCodes().put(this.dataBuffer, this.codewordBuffer);
+
+        }
     }
 
     /**
-     * Gives a string of 0s but with a 1 at the given index for when we need to add a data bit row to the generator matrix.
-     * @param index The index where the 1 is located in the row.
-     * @return An array of 0s with 1 at the given index.
+     * Fills the data slices of a whole table with random words from the channel, ready for encodeSliced. The lanes
+     * of the last group of slices past the last row of the table are cleared.
+     * @param dataSlices The array to write the dimension slices of each group of 64 rows into in turn.
      */
-    private char[] generateDataRow(int index) {
-
-        char[] wordToReturn = new char[dimension];
-
-        Arrays.fill(wordToReturn, '0');
-
-        wordToReturn[index] = '1';
-
-        return wordToReturn;
+    public void fillDataSlices(long[] dataSlices) {
+        this.fillDataSlices(dataSlices, 1);
     }
 
     /**
-     * Creates a character array with '1' placed on data parts and 'p' placed on parity bit positions
-     * @return A character array with '1' at data bits and 'p' at parity bits
+     * Fills the data slices of a frame of whole tables with random words from the channel, ready for encodeFrame,
+     * drawing exactly the same random numbers as filling each table in turn.
+     * @param dataSlices The array to write the data slices of each table into in turn.
+     * @param blocks The number of tables in the frame.
      */
-    private char[] createHammingString() {
+    public void fillDataSlices(long[] dataSlices, int blocks) {
 
-        //stepper for the power of 2 so that each parity bit is filled in
-        int parityBitFiller = 0;
+        int groups = BitSlicedCodec.groupsFor(this.interleaveHeight), lastLanes = this.interleaveHeight - (groups - 1) * BitSlicedCodec.LANES;
 
-        //the character array to be returned
-        char[] word = new char[this.wordLength];
+        //every bit of a slice is a bit of a different word, so the slices can be filled 64 random bits at a time
+        this.bitChannel.fillBits(dataSlices, blocks * groups * this.dimension * BitSlicedCodec.LANES);
 
-        //fill the entire array with a '1' to denote a data bit, and then we fill
-        //all cells with index of (power of 2) - 1 with a p to differentiate.
-        Arrays.fill(word, '1');
-        while(Math.pow(2, parityBitFiller) < this.wordLength) {
-            word[((int) Math.pow(2, parityBitFiller++)) - 1] = 'p';
+        if(lastLanes < BitSlicedCodec.LANES) {
+            for(int block = 0; block < blocks; block++)
+                for(int i = (block * groups + groups - 1) * this.dimension; i < (block + 1) * groups * this.dimension; i++)
+                    dataSlices[i] &= (1L << lastLanes) - 1;
         }
-
-        return word;
     }
 
     /**
-     * Encodes the given bit string into a Hamming code word with parity bits.
-     * @param strToConvert The string to convert into a Hamming code word.
-     * @return The code word that results from using Hamming encoding on the given string.
+     * Replaces the generator of the random numbers the channel of this encoder draws its bits from.
+     * @param randomGen The generator of the random numbers, which must not be used by anything else.
      */
-    private String convertToHamming(String strToConvert) {
-
-        //the result to be returned.
-        String result;
-
-        //if the string that needs to be converted to a Hamming code has already been seen before and so there is a code
-        //for it then fetch it from the existing codes map instead of recalculating it.
-        //If this is the first time that it has been seen then we have to calculate it first.
-        if (this.existingCodes.containsKey(strToConvert)) {
-
-            result = this.existingCodes.get(strToConvert);
-
-        } else {
-            //the resulting character array that we get from the matrix multiplication
-            char[] resultChars = new char[wordLength], strToConvertCharArray = strToConvert.toCharArray();
-
-            //the bit to add to the result array that is calculated from the generator matrix
-            char bitToAdd;
-
-            //calculate every bit of the result to add
-            for (int i = 0; i < resultChars.length; i++) {
-                bitToAdd = multiplyRows(this.generator[i], strToConvertCharArray);
-                resultChars[i] = bitToAdd;
-            }
-
-            //create the result string by converting the character array into a string
-            result = new String(resultChars);
-
-            //put the new code into the hashmap with the string passed to the function as the key
-            this.existingCodes.put(strToConvert,result);
+    public void setRandomGenerator(SplittableRandom randomGen) {
+        this.bitChannel.setRandomGenerator(randomGen);
+    }
 
-        }
+    public int getWordLength() {
+        return wordLength;
+    }
 
-        return result;
+    public int getDimension() {
+        return dimension;
     }
 
     /**
-     * Perform matrix multiplication modulo 2 on two given rows.
-     * @param row1 The first to perform the multiplication on.
-     * @param row2 The second row to perform the multiplication on.
-     * @return The result of the multiplication modulo 2, given as a char.
+     * Gives the existing codes cache, which is only made the first time it is needed as a bounded cache for a long
+     * code takes megabytes, while only words converted one at a time use it.
+     * @return The cache, keyed by words and holding codewords.
      */
-    private char multiplyRows(char[] row1, char[] row2) {
-
-        //the step between a digit and its ascii representation
-        final int asciiStep = 48;
+    public ICodewordCache getExistingCodes() {
 
-        //the sum of the bits resulting from the matrix multiplication
-        int sum = 0;
-
-        for(int i = 0; i < row1.length; i++) {
-            sum += Character.getNumericValue(row1[i]) * Character.getNumericValue(row2[i]);
-        }
+        if(this.existingCodes == null)
+            this.existingCodes = CodewordCaches.forWords(this.dimension, this.wordLength);
 
-        return(char) ((sum % 2) + asciiStep);
+        return this.existingCodes;
     }
 }
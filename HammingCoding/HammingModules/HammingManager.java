@@ -1,12 +1,40 @@
 package HammingCoding.HammingModules;
 
-import HammingCoding.ErrorModels.BurstErrorModel;
+import HammingCoding.ErrorModels.ErrorModelType;
+import HammingCoding.ErrorModels.ImportanceSamplingErrorModel;
+import HammingCoding.ErrorModels.ITransmissionError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Created by bnjhope on 16/11/16.
  */
 public class HammingManager {
 
+    /**
+     * How close the chain of a worker's error model must be to the state the chain of a single run would be in
+     * at the worker's first table, after its burn-in.
+     */
+    private static final double BURN_IN_TOLERANCE = 1e-9;
+
+    /**
+     * The most bits the error model of a worker is run for before its iterations.
+     */
+    private static final long MAX_BURN_IN_BITS = 1L << 24;
+
+    /**
+     * The number of bits aimed for in each frame of tables the whole process is run on without output, which is
+     * enough tables to spread the cost of each call over while staying small enough to be kept in the cache.
+     */
+    private static final int FRAME_BITS = 1 << 16;
+
     /**
      * The Hamming encoder used by this Hamming manager.
      */
@@ -15,7 +43,12 @@ public class HammingManager {
     /**
      * The error modeul used for the encoding and decoding.
      */
-    private BurstErrorModel errModel;
+    private ITransmissionError errModel;
+
+    /**
+     * The error model when simulating with importance sampling, which is also the error model used.
+     */
+    private ImportanceSamplingErrorModel importanceModel;
 
     /**
      * The Hamming decoder used by this Hamming manager.
@@ -23,7 +56,119 @@ public class HammingManager {
     private HammingDecoder decoder;
 
     /**
-     * Carry out the Hamming encoding and decoding process with the given probabilities.
+     * The 'r' value and interleave height that the current encoder and decoder were constructed for.
+     */
+    private int val, interleaveHeight;
+
+    /**
+     * How transmissions are simulated.
+     */
+    private SimulationMode mode = SimulationMode.FULL;
+
+    /**
+     * The type of error model made for each process.
+     */
+    private ErrorModelType errorModelType = ErrorModelType.BURST;
+
+    /**
+     * The interleaver that spreads the bits of the codewords out before they are sent.
+     */
+    private InterleaverType interleaverType = InterleaverType.BLOCK;
+
+    /**
+     * The convolutional interleaver of the current process, or null when the block interleaver is used.
+     */
+    private ConvolutionalInterleaver convolutional;
+
+    /**
+     * The shared pseudo-random interleaver for the table of the current process, or null when it is not used,
+     * along with the transposer and buffer used to turn the table between its columns and its rows for it.
+     */
+    private PermutationInterleaver permutation;
+    private InterleavingManager tableTransposer;
+    private long[] tableBuffer;
+
+    /**
+     * Delays the data sent by as many codewords as the convolutional interleaver delays the codewords, so that it
+     * can be compared with the data decoded, and turns data slices into the columns of a table for it.
+     */
+    private DelayLines dataDelay;
+    private InterleavingManager dataTransposer;
+
+    /**
+     * The columns of the data sent and of the data decoded when the convolutional interleaver is used.
+     */
+    private long[] sentColumns, decodedColumns;
+
+    /**
+     * The generator every process splits its own random number streams from, or null if each process
+     * should use unseeded streams.
+     */
+    private SplittableRandom randomGen;
+
+    /**
+     * The errors left after decoding and the data bits transferred over the iterations of the current process.
+     */
+    private final SuccessRateStatistics statistics = new SuccessRateStatistics();
+
+    /**
+     * Decides how many iterations each process runs, or null if each runs the number it is given.
+     */
+    private AdaptiveStopping stopping;
+
+    /**
+     * Whether the hit, miss and eviction counts of the encoder's and decoder's caches are added to the output.
+     */
+    private boolean showCacheStatistics;
+
+    /**
+     * The number of threads the iterations of a single process are split across.
+     */
+    private int workers = 1;
+
+    /**
+     * The number of bits the error model is run for before the iterations, when this manager runs a share of
+     * the iterations of a process that does not start at the first table.
+     */
+    private long burnInBits;
+
+    /**
+     * The data slices decoded from an error pattern in the error pattern mode.
+     */
+    private long[] errorDataSlices;
+
+    /**
+     * The number of tables in each frame when the whole process is run without output.
+     */
+    private int frameBlocks;
+
+    /**
+     * The data slices of the words sent and of the words decoded in each table of a frame, one table after another.
+     */
+    private long[] sentDataSlices, decodedDataSlices;
+
+    /**
+     * The packed transmitted bits of every table of a frame, each starting at a long boundary.
+     */
+    private long[] transmittedFrame;
+
+    /**
+     * The packed error pattern for a whole interleaving table.
+     */
+    private long[] errorPattern;
+
+    /**
+     * The packed bits of a whole interleaving table as they are transmitted.
+     */
+    private long[] transmittedBits;
+
+    /**
+     * The positions of the errors in a whole interleaving table in the sparse mode.
+     */
+    private int[] errorPositions;
+
+    /**
+     * Carry out the Hamming encoding and decoding process with the given probabilities and output the result.
      * @param val The 'r' value needed to calculate the word length and the dimension.
      * @param pOfError The probability that a bit is flipped while the error model is in a bad state.
      * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
@@ -31,36 +176,313 @@ public class HammingManager {
      * @param interleaveHeight The height of the interleaving table to be used.
      */
     public void doHammingProcess(int val, double pOfError, double pOfGoodToBad, double pOfBadToGood, int interleaveHeight, String outputType, int numberOfIterations) {
+        System.out.print(this.runHammingProcess(val, pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, outputType, numberOfIterations));
+    }
 
-        //the result from the encoder
-        EncodingResult encoderResult;
+    /**
+     * Carry out the Hamming encoding and decoding process with the given probabilities, giving back the result
+     * rather than outputting it so that processes can be run on other threads and their results output in order.
+     * Only the words at every stage for the "-o" output type are still output while the process runs.
+     * @param val The 'r' value needed to calculate the word length and the dimension.
+     * @param pOfError The probability that a bit is flipped while the error model is in a bad state.
+     * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
+     * @param pOfBadToGood The probability that while being in a bad state that the model flips into a good state.
+     * @param interleaveHeight The height of the interleaving table to be used.
+     * @return The text of the result, in the format given by the output type.
+     */
+    public String runHammingProcess(int val, double pOfError, double pOfGoodToBad, double pOfBadToGood, int interleaveHeight, String outputType, int numberOfIterations) {
 
-        //result from errors
-        String errorResult;
+        //the text of the result
+        StringBuilder result = new StringBuilder();
 
-        //result from decoding
-        DecodingResult decodingResult;
+        //the convolutional interleaver carries codewords over from one table to the next, so it can only be used
+        //where the tables are simulated one after another and count the same
+        if(this.interleaverType == InterleaverType.CONVOLUTIONAL && this.mode != SimulationMode.FULL
+                && this.mode != SimulationMode.ERROR_PATTERN && this.mode != SimulationMode.LOOKUP)
+            throw new IllegalArgumentException("The convolutional interleaver cannot be used in the " + this.mode.getName() + " mode.");
 
-        //the total number of errors that occurred over the iterations
-        int totalErrorCount = 0, totalBitsTransferred = 0;
+        //only the block interleaver's tables can be worked out exactly
+        if(this.interleaverType != InterleaverType.BLOCK && this.mode == SimulationMode.EXACT)
+            throw new IllegalArgumentException("Only the block interleaver can be used in the " + this.mode.getName() + " mode.");
 
         //The success rate of the error corrections and the average across all iterations
         double successRateAverage;
 
-        //construct the Hamming decoder based on the value given for the interleave
-        //height and the value for calculating the dimension and word length
-        this.encoder = new HammingEncoder(val, interleaveHeight);
+        //the success rate is either worked out exactly or found by simulating transmissions
+        if(this.mode == SimulationMode.EXACT)
+            successRateAverage = new MarkovChainEvaluator(val).getSuccessRate(pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, numberOfIterations);
+        else if(this.workers > 1)
+            successRateAverage = this.simulateInParallel(val, pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, numberOfIterations);
+        else
+            successRateAverage = this.simulate(val, pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, outputType, numberOfIterations);
+
+        if(outputType.equals("-o") || outputType.equals("-t")) {
+            result.append(String.format("r : %d \t pOfError : %.1f \t pGB : %.1f \t pBG : %.1f \t Interleave Height : %d \t Average Success Rate : %%%f", val, pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, successRateAverage));
+
+            //the number of iterations is only worth showing when it was decided by the stopping rule
+            if(this.isAdaptive())
+                result.append(String.format(" \t Iterations : %d \t Confidence Interval : +/- %%%f", this.statistics.getIterations(), this.statistics.getIntervalHalfWidth()));
+
+            result.append(System.lineSeparator());
+        } else {
+
+            //the half width of the interval is given as an error bar on the coordinate when it was decided by the stopping rule
+            String errorBar = this.isAdaptive() ? String.format(" +- (0,%.2f)", this.statistics.getIntervalHalfWidth()) : "";
+
+            switch(outputType) {
+                case "-r" :
+                    result.append(String.format("(%d,%.2f)%s ", val, successRateAverage, errorBar));
+                    break;
+                case "-ih" :
+                    result.append(String.format("(%d,%.2f)%s ", interleaveHeight, successRateAverage, errorBar));
+                    break;
+                case "-pe" :
+                    result.append(String.format("(%.1f,%.2f)%s ", pOfError, successRateAverage, errorBar));
+                    break;
+                case "-pgb" :
+                    result.append(String.format("(%.1f,%.2f)%s ", pOfGoodToBad, successRateAverage, errorBar));
+                    break;
+                case "-pbg" :
+                    result.append(String.format("(%.1f,%.2f)%s ", pOfBadToGood, successRateAverage, errorBar));
+                    break;
+            }
+        }
+
+        //show whether remembering previously converted words paid off, when asked to
+        if(this.showCacheStatistics && this.outputsWords(outputType) && this.workers == 1) {
+            result.append(this.formatCacheStatistics("Encoder", this.encoder.getExistingCodes()));
+            result.append(this.formatCacheStatistics("Decoder", this.decoder.getExistingCodes()));
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Simulates the iterations of a Hamming process, sending words or error patterns through the encoder, the error
+     * model and the decoder.
+     * @param val The 'r' value needed to calculate the word length and the dimension.
+     * @param pOfError The probability that a bit is flipped while the error model is in a bad state.
+     * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
+     * @param pOfBadToGood The probability that while being in a bad state that the model flips into a good state.
+     * @param interleaveHeight The height of the interleaving table to be used.
+     * @param outputType The type of output, where "-o" outputs the words at every stage.
+     * @param numberOfIterations The number of iterations to run when there is no stopping rule.
+     * @return The success rate over all the iterations as a percentage.
+     */
+    private double simulate(int val, double pOfError, double pOfGoodToBad, double pOfBadToGood, int interleaveHeight, String outputType, int numberOfIterations) {
+
+        //the encoder and decoder only depend on the value for calculating the dimension and word length and
+        //on the interleave height, so they are only constructed again when one of those changes
+        if(this.encoder == null || this.val != val || this.interleaveHeight != interleaveHeight) {
+
+            //construct the Hamming encoder based on the value given for the interleave
+            //height and the value for calculating the dimension and word length
+            this.encoder = new HammingEncoder(val, interleaveHeight);
+
+            //construct the Hamming decoder based on the value given for the interleave
+            //height and the value for calculating the dimension and word length
+            this.decoder = new HammingDecoder(val, interleaveHeight);
+
+            this.val = val;
+            this.interleaveHeight = interleaveHeight;
+
+            //the buffers for error patterns and transmitted bits, which are sized by the table
+            this.errorDataSlices = new long[BitSlicedCodec.groupsFor(interleaveHeight) * this.encoder.getDimension()];
+            this.errorPattern = new long[BitPacking.wordsFor(interleaveHeight * this.encoder.getWordLength())];
+            this.transmittedBits = new long[this.errorPattern.length];
+
+            //the buffers for a frame of tables, which hold at least one table however large it is
+            this.frameBlocks = Math.max(1, FRAME_BITS / (interleaveHeight * this.encoder.getWordLength()));
+            this.sentDataSlices = new long[this.frameBlocks * this.errorDataSlices.length];
+            this.decodedDataSlices = new long[this.sentDataSlices.length];
+            this.transmittedFrame = new long[this.frameBlocks * this.errorPattern.length];
+            this.errorPositions = new int[interleaveHeight * this.encoder.getWordLength()];
+        }
+
+        this.convolutional = null;
+        this.permutation = null;
+
+        //the delay lines of a convolutional interleaver start out empty for every process
+        if(this.interleaverType == InterleaverType.CONVOLUTIONAL) {
+
+            this.convolutional = new ConvolutionalInterleaver(interleaveHeight, this.encoder.getWordLength());
+
+            int[] dataDelays = new int[this.encoder.getDimension()];
+            Arrays.fill(dataDelays, this.convolutional.getDelay());
+
+            this.dataDelay = new DelayLines(dataDelays);
+            this.dataTransposer = new InterleavingManager(interleaveHeight, this.encoder.getDimension());
+            this.sentColumns = new long[BitPacking.wordsFor(interleaveHeight * this.encoder.getDimension())];
+            this.decodedColumns = new long[this.sentColumns.length];
+        } else if(this.interleaverType == InterleaverType.RANDOM) {
+            this.permutation = PermutationInterleaver.forTable(interleaveHeight, this.encoder.getWordLength());
+            this.tableTransposer = new InterleavingManager(interleaveHeight, this.encoder.getWordLength());
+            this.tableBuffer = new long[this.errorPattern.length];
+        }
+
+        //the generator of the random numbers for the error model
+        SplittableRandom modelRandom;
+
+        if(this.randomGen == null)
+            modelRandom = new SplittableRandom();
+        else {
+
+            //split a stream for this process, and from it separate streams for the channel and the error model,
+            //so that the same generator always gives the same results however the processes are run
+            modelRandom = this.randomGen.split();
+
+            this.encoder.setRandomGenerator(modelRandom.split());
+        }
 
         //make a new error model based on the probabilities passed to the function
-        this.errModel = new BurstErrorModel(pOfError, pOfGoodToBad, pOfBadToGood);
+        if(this.mode == SimulationMode.IMPORTANCE) {
+            this.importanceModel = new ImportanceSamplingErrorModel(pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight * this.encoder.getWordLength(), modelRandom);
+            this.errModel = this.importanceModel;
+        } else
+            this.errModel = this.errorModelType.create(pOfError, pOfGoodToBad, pOfBadToGood, modelRandom);
+
+        //a worker runs its error model on past the bits sent before its first table, which an importance
+        //sampling model does not need as every table starts afresh
+        if(this.burnInBits > 0 && this.mode != SimulationMode.IMPORTANCE) {
+            for(long done = 0; done < this.burnInBits; done += this.errorPositions.length)
+                this.errModel.fillErrorMask(this.errorPattern, (int) Math.min(this.errorPositions.length, this.burnInBits - done));
+        }
+
+        //reset the totals before the iterations are run
+        this.statistics.reset();
+
+        //the words at every stage are only built when they are going to be output
+        if(this.outputsWords(outputType))
+            this.runFullIterations(outputType, numberOfIterations);
+        else if(this.mode == SimulationMode.FULL)
+            this.runLeanIterations(numberOfIterations);
+        else
+            this.runErrorPatternIterations(numberOfIterations);
+
+        //total bits transferred in all iterations
+        return this.statistics.getSuccessRate();
+    }
+
+    /**
+     * Simulates the iterations of a Hamming process split across worker threads. Each worker has its own manager,
+     * and so its own encoder, decoder, interleaver and error model seeded from its own random number stream, and
+     * keeps its own statistics, which are only merged once every worker has finished. With a stopping rule, each
+     * worker stops by its share of the rule rather than the whole of it, as the interval of the merged statistics
+     * is narrower than that of any one worker's. The chain of every worker but the first is run on past roughly
+     * as many bits as a single run would have sent before the worker's first table, so that each worker starts
+     * from the state its share of the tables would have started in.
+     * The words at every stage are never output from the workers.
+     * @param val The 'r' value needed to calculate the word length and the dimension.
+     * @param pOfError The probability that a bit is flipped while the error model is in a bad state.
+     * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
+     * @param pOfBadToGood The probability that while being in a bad state that the model flips into a good state.
+     * @param interleaveHeight The height of the interleaving table to be used.
+     * @param numberOfIterations The number of iterations to split across the workers when there is no stopping rule.
+     * @return The success rate over all the iterations as a percentage.
+     */
+    private double simulateInParallel(int val, double pOfError, double pOfGoodToBad, double pOfBadToGood, int interleaveHeight, int numberOfIterations) {
+
+        //the number of bits in an interleaving table
+        long tableBits = (long) interleaveHeight * ((1 << val) - 1);
+
+        //the stream every worker's stream is split from, in order, so that the results only depend on the seed and the number of workers
+        SplittableRandom processRandom = this.randomGen == null ? new SplittableRandom() : this.randomGen.split();
+
+        List<Callable<SuccessRateStatistics>> tasks = new ArrayList<>();
+
+        //every worker stops by its share of the stopping rule, so that their merged statistics meet the rule as a whole
+        AdaptiveStopping workerStopping = this.stopping == null ? null : this.stopping.forWorkers(this.workers);
+
+        //the first iteration of the next worker
+        int firstIteration = 0;
+
+        for(int i = 0; i < this.workers; i++) {
+
+            //share the iterations out as evenly as possible
+            int iterations = numberOfIterations / this.workers + (i < numberOfIterations % this.workers ? 1 : 0);
+
+            HammingManager worker = new HammingManager();
+            worker.mode = this.mode;
+            worker.errorModelType = this.errorModelType;
+            worker.interleaverType = this.interleaverType;
+            worker.stopping = workerStopping;
+            worker.randomGen = processRandom.split();
+            worker.burnInBits = getBurnInBits(firstIteration * tableBits, pOfGoodToBad, pOfBadToGood);
+
+            tasks.add(() -> {
+                worker.simulate(val, pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, "-t", iterations);
+                return worker.statistics;
+            });
+
+            firstIteration += iterations;
+        }
 
-        //construct the Hamming decoder based on the value given for the interleave
-        //height and the value for calculating the dimension and word length
-        this.decoder = new HammingDecoder(val, interleaveHeight);
+        ForkJoinPool pool = new ForkJoinPool(this.workers);
 
-        //for the number of iterations we want, perform the
+        try {
+            this.statistics.reset();
+
+            for(Future<SuccessRateStatistics> result : pool.invokeAll(tasks))
+                this.statistics.merge(result.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the workers to finish.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A worker of the process failed.", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        return this.statistics.getSuccessRate();
+    }
+
+    /**
+     * Works out how many bits a worker's error model should be run for before its first table. Rather than the
+     * whole offset of the table, this only needs to be long enough for the chain to forget the state it started in.
+     * @param offset The number of bits a single run would have sent before the worker's first table.
+     * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
+     * @param pOfBadToGood The probability that while being in a bad state that the model flips into a good state.
+     * @return The number of bits to run the error model for.
+     */
+    private static long getBurnInBits(long offset, double pOfGoodToBad, double pOfBadToGood) {
+
+        //the chain never changes state, so where it starts is where it would be
+        if(pOfGoodToBad + pOfBadToGood == 0.0)
+            return 0;
+
+        //how much of the difference from the stationary distribution is left after each bit
+        double decay = Math.abs(1.0 - pOfGoodToBad - pOfBadToGood);
+
+        long mixingBits = decay == 0.0 ? 0 : decay >= 1.0 ? MAX_BURN_IN_BITS : (long) Math.ceil(Math.log(BURN_IN_TOLERANCE) / Math.log(decay));
+        long bits = Math.min(offset, Math.min(mixingBits, MAX_BURN_IN_BITS));
+
+        //keep the same parity as the offset, as a chain that switches state on every bit never forgets its start
+        if((offset - bits) % 2 != 0)
+            bits++;
+
+        return bits;
+    }
+
+    /**
+     * Runs iterations of the whole process, encoding random words from the channel, putting errors in them and
+     * decoding them, adding the errors left and the bits transferred to the totals.
+     * @param outputType The type of output, where "-o" outputs the words at every stage.
+     * @param numberOfIterations The number of iterations to run when there is no stopping rule.
+     */
+    private void runFullIterations(String outputType, int numberOfIterations) {
+
+        //the result from the encoder
+        EncodingResult encoderResult;
+
+        //result from errors
+        String errorResult;
+
+        //result from decoding
+        DecodingResult decodingResult;
+
+        //until the number of iterations we want have been done, perform the
         //process.
-        for(int i = 0; i < numberOfIterations; i++) {
+        while(this.needsMoreIterations(numberOfIterations)) {
             //produce an encoding result
             encoderResult = this.encoder.encode();
 
@@ -80,35 +502,228 @@ public class HammingManager {
                 decodingResult.outputCodewordConversions();
             }
 
-            totalBitsTransferred += encoderResult.getInputStream().length();
-            totalErrorCount += this.getErrors(encoderResult.getInputStream(), decodingResult.getResultString());
+            this.statistics.add(this.getErrors(encoderResult.getInputStream(), decodingResult.getResultString()), encoderResult.getInputStream().length());
         }
+    }
 
-        //total bits transferred in all iterations
-        successRateAverage = this.getAverage(totalErrorCount, totalBitsTransferred);
+    /**
+     * Runs iterations of the whole process without building any strings or result objects, for when the words at
+     * every stage are not output. Random words for a frame of tables are encoded and interleaved straight into one
+     * packed frame, the errors are applied 64 bits at a time, and the whole frame is decoded in one call before
+     * the decoded slices of each table are compared with the sent ones, all in buffers that are reused from one
+     * frame to the next. Every table still counts as one iteration, in the same order and with the same random
+     * numbers as if they were run one at a time.
+     * @param numberOfIterations The number of iterations to run when there is no stopping rule.
+     */
+    private void runLeanIterations(int numberOfIterations) {
 
-        if(outputType.equals("-o") || outputType.equals("-t"))
-            System.out.println(String.format("r : %d \t pOfError : %.1f \t pGB : %.1f \t pBG : %.1f \t Interleave Height : %d \t Average Success Rate : %%%f", val, pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, successRateAverage));
-        else {
-            switch(outputType) {
-                case "-r" :
-                    System.out.print(String.format("(%d,%.2f) ", val, successRateAverage));
-                    break;
-                case "-ih" :
-                    System.out.print(String.format("(%d,%.2f) ", interleaveHeight, successRateAverage));
-                    break;
-                case "-pe" :
-                    System.out.print(String.format("(%.1f,%.2f) ", pOfError, successRateAverage));
-                    break;
-                case "-pgb" :
-                    System.out.print(String.format("(%.1f,%.2f) ", pOfGoodToBad, successRateAverage));
-                    break;
-                case "-pbg" :
-                    System.out.print(String.format("(%.1f,%.2f) ", pOfBadToGood, successRateAverage));
-                    break;
+        //the number of bits in an interleaving table and the number of data bits it carries
+        int tableBits = this.interleaveHeight * this.encoder.getWordLength(), dataBits = this.interleaveHeight * this.encoder.getDimension();
+
+        //the longs and data slices each table takes up in a frame
+        int tableLongs = this.errorPattern.length, tableSlices = this.errorDataSlices.length;
+
+        //the other interleavers work on a single table at the start of a frame
+        int frameBlocks = this.convolutional == null && this.permutation == null ? this.frameBlocks : 1;
+
+        while(this.needsMoreIterations(numberOfIterations)) {
+
+            //a fixed number of iterations never runs past the last one, while tables past the point the stopping
+            //rule is satisfied are simply not counted
+            int blocks = this.stopping == null ? Math.min(frameBlocks, numberOfIterations - (int) this.statistics.getIterations()) : frameBlocks;
+
+            //encode random words for every table of the frame and interleave them into the transmitted bits
+            this.encoder.fillDataSlices(this.sentDataSlices, blocks);
+            this.encoder.encodeFrame(this.sentDataSlices, this.transmittedFrame, blocks);
+
+            this.interleave(this.transmittedFrame);
+
+            //flip every bit that has an error, 64 bits at a time
+            for(int block = 0; block < blocks; block++) {
+
+                this.errModel.fillErrorMask(this.errorPattern, tableBits);
+
+                for(int i = 0; i < tableLongs; i++)
+                    this.transmittedFrame[block * tableLongs + i] ^= this.errorPattern[i];
+            }
+
+            this.deinterleave(this.transmittedFrame);
+
+            //decode the received bits, where any data bit that differs from the one sent is an error
+            this.decoder.decodeFrame(this.transmittedFrame, this.decodedDataSlices, blocks, null);
+
+            for(int block = 0; block < blocks && this.needsMoreIterations(numberOfIterations); block++) {
+
+                //the errors left in this table
+                long errorCount = 0;
+
+                if(this.convolutional != null)
+                    errorCount = this.countDelayedErrors();
+                else {
+                    for(int i = block * tableSlices; i < (block + 1) * tableSlices; i++)
+                        errorCount += Long.bitCount(this.decodedDataSlices[i] ^ this.sentDataSlices[i]);
+                }
+
+                this.statistics.add(errorCount, dataBits);
             }
         }
+    }
 
+    /**
+     * Turns a table read out column by column, as the block interleaver sends it, into the order the chosen
+     * interleaver sends its bits in.
+     * @param bits The packed bits of the table, which are replaced by the packed bits to send.
+     */
+    private void interleave(long[] bits) {
+
+        if(this.convolutional != null)
+            this.convolutional.interleave(bits);
+        else if(this.permutation != null) {
+            this.tableTransposer.decodePacked(bits, this.tableBuffer);
+            this.permutation.encodePacked(this.tableBuffer, bits);
+        }
+    }
+
+    /**
+     * Turns bits received in the order the chosen interleaver sends them in into a table read out column by
+     * column, which is how the decoder takes it.
+     * @param bits The packed bits received, which are replaced by the packed bits of the table.
+     */
+    private void deinterleave(long[] bits) {
+
+        if(this.convolutional != null)
+            this.convolutional.deinterleave(bits);
+        else if(this.permutation != null) {
+            this.permutation.decodePacked(bits, this.tableBuffer);
+            this.tableTransposer.encodePacked(this.tableBuffer, bits);
+        }
+    }
+
+    /**
+     * Maps the positions of errors sent through the pseudo-random interleaver to where they would be in a table
+     * read out column by column, sorted as the decoder needs them.
+     * @param positions The positions of the errors, which are replaced by the positions in the table.
+     * @param count The number of positions.
+     */
+    private void deinterleave(int[] positions, int count) {
+
+        for(int i = 0; i < count; i++) {
+            int tablePosition = this.permutation.tablePositionOf(positions[i]);
+            positions[i] = this.tableTransposer.positionOf(tablePosition / this.encoder.getWordLength(), tablePosition % this.encoder.getWordLength());
+        }
+
+        Arrays.sort(positions, 0, count);
+    }
+
+    /**
+     * Counts the errors in the data decoded through the convolutional interleaver, which belongs to the codewords
+     * sent the delay of the interleaver earlier, so the data sent is put through delay lines of the same length
+     * before the two are compared.
+     * @return The number of data bits decoded wrongly.
+     */
+    private long countDelayedErrors() {
+
+        long errorCount = 0;
+
+        this.dataTransposer.encodeSlices(this.sentDataSlices, this.sentColumns);
+        this.dataDelay.delay(this.sentColumns, this.sentColumns, this.interleaveHeight);
+        this.dataTransposer.encodeSlices(this.decodedDataSlices, this.decodedColumns);
+
+        for(int i = 0; i < this.sentColumns.length; i++)
+            errorCount += Long.bitCount(this.sentColumns[i] ^ this.decodedColumns[i]);
+
+        return errorCount;
+    }
+
+    /**
+     * Runs iterations which send only error patterns through the interleaver and decoder. As the code is linear
+     * the data bits decoded from an error pattern are exactly the data bits the full process would get wrong,
+     * so the channel and the encoder are not needed.
+     * @param numberOfIterations The number of iterations to run when there is no stopping rule.
+     */
+    private void runErrorPatternIterations(int numberOfIterations) {
+
+        //the number of bits in an interleaving table and the number of data bits it carries
+        int tableBits = this.interleaveHeight * this.encoder.getWordLength(), dataBits = this.interleaveHeight * this.encoder.getDimension();
+
+        //whether codewords are scored with the residual error table rather than decoded
+        boolean useLookup = this.mode == SimulationMode.LOOKUP && ResidualErrorTable.isAvailable(this.val);
+
+        while(this.needsMoreIterations(numberOfIterations)) {
+
+            //the errors left in this iteration, and the weight they count with
+            long errorCount = 0;
+            double weight = 1.0;
+
+            if(this.mode == SimulationMode.SPARSE) {
+
+                //the positions of the errors for a whole table, where only the codewords they fall in are corrected
+                int positionCount = this.errModel.fillErrorPositions(this.errorPositions, tableBits);
+
+                if(this.permutation != null)
+                    this.deinterleave(this.errorPositions, positionCount);
+
+                errorCount = this.decoder.countResidualErrors(this.errorPositions, positionCount);
+            } else {
+
+                //with importance sampling each table is a separate run, weighted by its own likelihood ratio
+                if(this.mode == SimulationMode.IMPORTANCE)
+                    this.importanceModel.startRun();
+
+                //the error pattern for a whole table, in the order its bits are transmitted, which only needs
+                //de-interleaving as the all 0 codewords that are interleaved stay all 0
+                this.errModel.fillErrorMask(this.errorPattern, tableBits);
+                this.deinterleave(this.errorPattern);
+
+                if(this.mode == SimulationMode.IMPORTANCE)
+                    weight = this.importanceModel.getLikelihoodRatio();
+
+                //score each codeword from the table of residual errors where there is one, or otherwise
+                //decode the error pattern, where any data bit left set is an error
+                if(useLookup)
+                    errorCount = this.decoder.countResidualErrors(this.errorPattern);
+                else {
+                    this.decoder.decodeSliced(this.errorPattern, this.errorDataSlices);
+
+                    for(long slice : this.errorDataSlices)
+                        errorCount += Long.bitCount(slice);
+                }
+            }
+
+            this.statistics.add(errorCount, weight, dataBits);
+        }
+    }
+
+    /**
+     * Checks whether the words at every stage are output, which is only done for the "-o" output type when whole
+     * words are sent through the block interleaver.
+     * @param outputType The type of output for the result.
+     * @return True if the words at every stage are output.
+     */
+    private boolean outputsWords(String outputType) {
+        return outputType.equals("-o") && this.mode == SimulationMode.FULL && this.interleaverType == InterleaverType.BLOCK;
+    }
+
+    /**
+     * Checks whether the number of iterations of each process is decided by the stopping rule, which is
+     * never the case when the success rate is worked out exactly.
+     * @return True if the iterations are decided by the stopping rule.
+     */
+    private boolean isAdaptive() {
+        return this.stopping != null && this.mode != SimulationMode.EXACT;
+    }
+
+    /**
+     * Checks whether the current process should run another iteration.
+     * @param numberOfIterations The number of iterations to run when there is no stopping rule.
+     * @return True if another iteration should be run.
+     */
+    private boolean needsMoreIterations(int numberOfIterations) {
+
+        if(this.stopping == null)
+            return this.statistics.getIterations() < numberOfIterations;
+
+        return !this.stopping.isSatisfied(this.statistics);
     }
 
     /**
@@ -118,18 +733,71 @@ public class HammingManager {
      */
     private String generateErrorString(String strForErrors) {
 
-        //the resulting string to return
-        String result = "";
+        //pack the string, and get the errors for all of its bits at once from the error model
+        BitPacking.pack(strForErrors, this.transmittedBits);
+        this.errModel.fillErrorMask(this.errorPattern, strForErrors.length());
 
-        for(int i = 0; i < strForErrors.length(); i++) {
-            if(this.errModel.flip()) {
-                result += (strForErrors.charAt(i) == '0') ? '1' : '0';
-            } else {
-                result += strForErrors.charAt(i);
-            }
-        }
+        //flip every bit that has an error, 64 bits at a time
+        for(int i = 0; i < this.transmittedBits.length; i++)
+            this.transmittedBits[i] ^= this.errorPattern[i];
+
+        return BitPacking.unpack(this.transmittedBits, strForErrors.length());
+    }
+
+    public void setSimulationMode(SimulationMode mode) {
+        this.mode = mode;
+    }
+
+    public void setErrorModelType(ErrorModelType errorModelType) {
+        this.errorModelType = errorModelType;
+    }
+
+    public void setInterleaverType(InterleaverType interleaverType) {
+        this.interleaverType = interleaverType;
+    }
 
-        return result;
+    public void setRandomGenerator(SplittableRandom randomGen) {
+        this.randomGen = randomGen;
+    }
+
+    public void setStopping(AdaptiveStopping stopping) {
+        this.stopping = stopping;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = Math.max(1, workers);
+    }
+
+    public void setShowCacheStatistics(boolean showCacheStatistics) {
+        this.showCacheStatistics = showCacheStatistics;
+    }
+
+    /**
+     * @return The success rate of the last process that was simulated, as a percentage.
+     */
+    public double getSuccessRate() {
+        return this.statistics.getSuccessRate();
+    }
+
+    /**
+     * @return The half width of the confidence interval of the success rate of the last process that was simulated.
+     */
+    public double getIntervalHalfWidth() {
+        return this.statistics.getIntervalHalfWidth();
+    }
+
+    /**
+     * Formats the hit, miss and eviction counts of a codeword cache as a line of output.
+     * @param name The name of the cache's owner.
+     * @param cache The cache to output the counts of.
+     * @return The line of output.
+     */
+    private String formatCacheStatistics(String name, ICodewordCache cache) {
+
+        //the proportion of lookups that were found in the cache
+        double hitRate = 100.0 * cache.getHits() / Math.max(1, cache.getHits() + cache.getMisses());
+
+        return String.format("%s cache : \t Hits : %d \t Misses : %d \t Evictions : %d \t Hit Rate : %%%f%n", name, cache.getHits(), cache.getMisses(), cache.getEvictions(), hitRate);
     }
 
     private int getErrors(String input, String output) {
@@ -145,10 +813,4 @@ public class HammingManager {
 
     }
 
-    private double getAverage(int errorCount, int totalBits) {
-
-        return ((double) (totalBits - errorCount) / totalBits) * 100;
-
-    }
-
 }
@@ -0,0 +1,38 @@
+package HammingCoding.HammingModules;
+
+/**
+ * Remembers the result of converting packed words, such as the codeword for a data word, so that words
+ * which have been seen before are not converted again.
+ */
+public interface ICodewordCache {
+
+    /**
+     * Looks up the value remembered for a key.
+     * @param key The packed key.
+     * @param value The array to copy the packed value into if the key is found.
+     * @return True if the key was found, false if not.
+     */
+    public boolean get(long[] key, long[] value);
+
+    /**
+     * Remembers the value for a key, which may cause another entry to be evicted.
+     * @param key The packed key.
+     * @param value The packed value.
+     */
+    public void put(long[] key, long[] value);
+
+    /**
+     * @return The number of lookups which found their key.
+     */
+    public long getHits();
+
+    /**
+     * @return The number of lookups which did not find their key.
+     */
+    public long getMisses();
+
+    /**
+     * @return The number of entries which have been evicted to make room for new ones.
+     */
+    public long getEvictions();
+}
@@ -0,0 +1,36 @@
+package HammingCoding.HammingModules;
+
+/**
+ * Spreads the bits of a table of codewords out over a transmission, and puts them back in order again.
+ * The table is given row by row, with one codeword in each row.
+ */
+public interface IInterleaver {
+
+    /**
+     * Interleaves a table held as a string of bits.
+     * @param strToEncode The bits of the table, row by row.
+     * @return The bits in the order they are sent.
+     */
+    public String encode(String strToEncode);
+
+    /**
+     * Undoes the interleaving of a string of bits.
+     * @param strToDecode The bits in the order they were sent.
+     * @return The bits of the table, row by row.
+     */
+    public String decode(String strToDecode);
+
+    /**
+     * Interleaves a packed table into a packed stream.
+     * @param table The packed bits of the table, row by row.
+     * @param stream The array to write the packed bits into, in the order they are sent.
+     */
+    public void encodePacked(long[] table, long[] stream);
+
+    /**
+     * Undoes the interleaving of a packed stream into a packed table.
+     * @param stream The packed bits in the order they were sent.
+     * @param table The array to write the packed bits of the table into, row by row.
+     */
+    public void decodePacked(long[] stream, long[] table);
+}
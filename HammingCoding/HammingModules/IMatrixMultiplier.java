@@ -0,0 +1,17 @@
+package HammingCoding.HammingModules;
+
+/**
+ * Multiplies rows of a packed matrix by a packed word modulo 2.
+ */
+public interface IMatrixMultiplier {
+
+    /**
+     * Multiplies up to 64 consecutive rows of a packed matrix by a packed word modulo 2.
+     * @param matrix The rows of the matrix, each packed into the same number of longs as the word.
+     * @param fromRow The index of the first row to multiply.
+     * @param rows The number of rows to multiply, at most 64.
+     * @param word The packed word.
+     * @return The bits of the product, with the bit for row fromRow + i at position i.
+     */
+    public long multiplyRows(long[][] matrix, int fromRow, int rows, long[] word);
+}
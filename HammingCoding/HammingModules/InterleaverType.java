@@ -0,0 +1,51 @@
+package HammingCoding.HammingModules;
+
+/**
+ * The interleavers a Hamming manager can spread the bits of codewords out with, each selected on the command
+ * line by its name.
+ */
+public enum InterleaverType {
+
+    /**
+     * Writes a table of codewords in row by row and sends it column by column.
+     */
+    BLOCK("block"),
+
+    /**
+     * Delays each bit position of the codewords by a different number of codewords, sending one codeword at a time.
+     */
+    CONVOLUTIONAL("convolutional"),
+
+    /**
+     * Sends the bits of a table in the order of a fixed pseudo-random permutation.
+     */
+    RANDOM("random");
+
+    /**
+     * The name of the interleaver on the command line.
+     */
+    private final String name;
+
+    InterleaverType(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Finds the interleaver with the given command line name.
+     * @param name The name of the interleaver.
+     * @return The interleaver with that name.
+     */
+    public static InterleaverType fromName(String name) {
+
+        for(InterleaverType type : values()) {
+            if(type.name.equals(name))
+                return type;
+        }
+
+        throw new IllegalArgumentException("Unknown interleaver : " + name);
+    }
+}
@@ -3,7 +3,7 @@ package HammingCoding.HammingModules;
 /**
  * Created by bh59 on 26/10/16.
  */
-public class InterleavingManager {
+public class InterleavingManager implements IInterleaver {
 
 
     /**
@@ -13,14 +13,22 @@ public class InterleavingManager {
     private int height, wordLength;
 
     /**
-     * The grid of the interleaving table, represented as a 2 dimensional array of characters.
+     * The table held as a packed bit matrix, with the bits of each row in turn, and the packed bits of the
+     * interleaved stream, used to interleave strings.
      */
-    private char[][] grid;
+    private long[] table, stream;
+
+    /**
+     * A block of 64 rows of up to 64 bits each, which is transposed in place.
+     */
+    private long[] block;
 
     public InterleavingManager(int height, int wordLength) {
         this.height = height;
         this.wordLength = wordLength;
-        this.grid = new char[height][wordLength];
+        this.table = new long[BitPacking.wordsFor(height * wordLength)];
+        this.stream = new long[this.table.length];
+        this.block = new long[BitSlicedCodec.LANES];
     }
 
     /**
@@ -30,11 +38,11 @@ public class InterleavingManager {
      */
     public String encode(String strToEncode) {
 
-        //read the string into the table row by row.
-        this.encodeIn(strToEncode);
+        //read the string into the table row by row, and read it back out column by column
+        BitPacking.pack(strToEncode, this.table);
+        this.encodePacked(this.table, this.stream);
 
-        //output the result of reading the grid column by column
-        return this.encodeOut();
+        return BitPacking.unpack(this.stream, this.height * this.wordLength);
     }
 
     /**
@@ -44,71 +52,175 @@ public class InterleavingManager {
      */
     public String decode(String strToDecode) {
 
-        //read the string into the table column by column.
-        this.decodeIn(strToDecode);
+        //read the string into the table column by column, and read it back out row by row
+        BitPacking.pack(strToDecode, this.stream);
+        this.decodePacked(this.stream, this.table);
 
-        //output the result of reading the grid row by row
-        return this.decodeOut();
+        return BitPacking.unpack(this.table, this.height * this.wordLength);
     }
 
     /**
-     * Adds the string to the table row by row.
-     * @param strToEncode The string to add to the table.
+     * Interleaves a packed table into a packed stream. Reading the table out column by column is a transpose of
+     * the bit matrix, which is done 64 rows by 64 columns at a time.
+     * @param table The packed bits of the table, with the bits of each row in turn.
+     * @param stream The array to write the packed interleaved bits into.
      */
-    private void encodeIn(String strToEncode) {
+    public void encodePacked(long[] table, long[] stream) {
+
+        for(int rowBase = 0; rowBase < this.height; rowBase += BitSlicedCodec.LANES) {
+            for(int colBase = 0; colBase < this.wordLength; colBase += BitSlicedCodec.LANES) {
+
+                //the size of this block, which is smaller than 64 by 64 at the bottom and right edges of the table
+                int rows = Math.min(BitSlicedCodec.LANES, this.height - rowBase), cols = Math.min(BitSlicedCodec.LANES, this.wordLength - colBase);
 
-        int index = 0;
+                for(int i = 0; i < BitSlicedCodec.LANES; i++)
+                    this.block[i] = i < rows ? BitPacking.readBits(table, (rowBase + i) * this.wordLength + colBase, cols) : 0L;
 
-        for(int row = 0; row < this.height; row++)
-            for(int col = 0; col < this.wordLength; col++)
-                this.grid[row][col] = strToEncode.charAt(index++);
+                transpose(this.block);
+
+                //each row of the transposed block is part of a column of the table
+                for(int j = 0; j < cols; j++)
+                    BitPacking.writeBits(stream, (colBase + j) * this.height + rowBase, this.block[j], rows);
+            }
+        }
     }
 
     /**
-     * Adds the string to the table column by column.
-     * @param strToDecode The string to add to the table.
+     * Undoes the interleaving of a packed stream into a packed table, transposing it back 64 rows by 64 columns
+     * at a time.
+     * @param stream The packed interleaved bits.
+     * @param table The array to write the packed bits of the table into, with the bits of each row in turn.
      */
-    private void decodeIn(String strToDecode) {
+    public void decodePacked(long[] stream, long[] table) {
 
-        //the index of where in the string the interleaver has reaced
-        int index = 0;
+        for(int rowBase = 0; rowBase < this.height; rowBase += BitSlicedCodec.LANES) {
+            for(int colBase = 0; colBase < this.wordLength; colBase += BitSlicedCodec.LANES) {
 
-        for(int col = 0; col < this.wordLength; col++)
-            for(int row = 0; row < this.height; row++)
-                this.grid[row][col] = strToDecode.charAt(index++);
+                int rows = Math.min(BitSlicedCodec.LANES, this.height - rowBase), cols = Math.min(BitSlicedCodec.LANES, this.wordLength - colBase);
+
+                for(int j = 0; j < BitSlicedCodec.LANES; j++)
+                    this.block[j] = j < cols ? BitPacking.readBits(stream, (colBase + j) * this.height + rowBase, rows) : 0L;
 
+                transpose(this.block);
+
+                for(int i = 0; i < rows; i++)
+                    BitPacking.writeBits(table, (rowBase + i) * this.wordLength + colBase, this.block[i], cols);
+            }
+        }
     }
 
     /**
-     * Reads the string from the table column by column.
-     * @return The result of reading bits column by column.
+     * Transposes a 64 by 64 bit matrix in place, so that bit j of row i becomes bit i of row j. The matrix is split
+     * into four blocks, the two blocks off the diagonal are swapped, and the same is done within every block with
+     * half the size, down to single bits, which takes 6 rounds of 32 shifts and masks.
+     * @param matrix The 64 rows of the matrix, with bit j of a row holding its column j.
      */
-    private String encodeOut() {
+    static void transpose(long[] matrix) {
+
+        //the mask selects the low half of every block of twice the current size in a row
+        long mask = 0x00000000FFFFFFFFL;
 
-        //the string that is constructed from the interleaving process
-        String result = "";
+        for(int size = 32; size != 0; size >>>= 1, mask ^= mask << size) {
+
+            //visit each row in the top half of every block, pairing it with the row size below it
+            for(int k = 0; k < BitSlicedCodec.LANES; k = ((k | size) + 1) & ~size) {
+
+                long swap = ((matrix[k] >>> size) ^ matrix[k | size]) & mask;
+
+                matrix[k] ^= swap << size;
+                matrix[k | size] ^= swap;
+            }
+        }
+    }
+
+    /**
+     * Interleaves codewords held as bit slices straight into a packed stream. Because the table is read
+     * out column by column, each column of the table is the slice of that bit position across its rows,
+     * so no grid is needed.
+     * @param codeSlices The codeword slices, with the word length slices of each group of 64 rows in turn.
+     * @param stream The array to write the packed interleaved bits into.
+     */
+    public void encodeSlices(long[] codeSlices, long[] stream) {
+        this.encodeSlices(codeSlices, 0, stream, 0);
+    }
+
+    /**
+     * Interleaves codewords held as bit slices straight into a packed stream, starting part of the way through
+     * both arrays, such as at one table of a frame of many.
+     * @param codeSlices The codeword slices, with the word length slices of each group of 64 rows in turn.
+     * @param sliceOffset The index of the first slice of the table.
+     * @param stream The array to write the packed interleaved bits into.
+     * @param streamOffset The index of the bit of the stream the table starts at.
+     */
+    public void encodeSlices(long[] codeSlices, int sliceOffset, long[] stream, int streamOffset) {
 
         for(int col = 0; col < this.wordLength; col++)
-            for(int row = 0; row < this.height; row++)
-                result += this.grid[row][col];
+            for(int group = 0; group * BitSlicedCodec.LANES < this.height; group++)
+                BitPacking.writeBits(stream, streamOffset + col * this.height + group * BitSlicedCodec.LANES,
+                        codeSlices[sliceOffset + group * this.wordLength + col], this.lanesInGroup(group));
+    }
 
-        return result;
+    /**
+     * Undoes the interleaving of a packed stream straight into codeword slices.
+     * @param stream The packed interleaved bits.
+     * @param codeSlices The array to write the codeword slices into, with the word length slices of each
+     *                   group of 64 rows in turn.
+     */
+    public void decodeSlices(long[] stream, long[] codeSlices) {
+        this.decodeSlices(stream, 0, codeSlices);
     }
 
     /**
-     * Reads the string from the table row by row.
-     * @return The result of reading bits row by row.
+     * Undoes the interleaving of a table that starts part of the way through a packed stream, such as one table
+     * of a frame of many, straight into codeword slices.
+     * @param stream The packed interleaved bits.
+     * @param streamOffset The index of the bit of the stream the table starts at.
+     * @param codeSlices The array to write the codeword slices into, with the word length slices of each
+     *                   group of 64 rows in turn.
      */
-    private String decodeOut() {
+    public void decodeSlices(long[] stream, int streamOffset, long[] codeSlices) {
 
-        //the string that is constructed from the interleaving process
-        String result = "";
+        for(int col = 0; col < this.wordLength; col++)
+            for(int group = 0; group * BitSlicedCodec.LANES < this.height; group++)
+                codeSlices[group * this.wordLength + col] = BitPacking.readBits(stream,
+                        streamOffset + col * this.height + group * BitSlicedCodec.LANES, this.lanesInGroup(group));
+    }
 
-        for(int row = 0; row < this.height; row++)
-            for(int col = 0; col < this.wordLength; col++)
-                result += this.grid[row][col];
+    /**
+     * Gives the row of the table that the bit at a position of the interleaved stream belongs to.
+     * @param position The position in the interleaved stream.
+     * @return The row of the table, which is the codeword the bit belongs to.
+     */
+    public int rowOf(int position) {
+        return position % this.height;
+    }
 
-        return result;
+    /**
+     * Gives the column of the table that the bit at a position of the interleaved stream belongs to.
+     * @param position The position in the interleaved stream.
+     * @return The column of the table, which is the position of the bit in its codeword.
+     */
+    public int columnOf(int position) {
+        return position / this.height;
+    }
+
+    /**
+     * Gives the position in the interleaved stream of a bit of the table.
+     * @param row The row of the table.
+     * @param column The column of the table.
+     * @return The position in the interleaved stream.
+     */
+    public int positionOf(int row, int column) {
+        return column * this.height + row;
+    }
+
+    /**
+     * Gives the number of rows of the table that fall in the given group of 64 rows.
+     * @param group The index of the group.
+     * @return The number of rows in the group.
+     */
+    private int lanesInGroup(int group) {
+        return Math.min(BitSlicedCodec.LANES, this.height - group * BitSlicedCodec.LANES);
     }
 
 }
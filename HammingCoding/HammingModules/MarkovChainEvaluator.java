@@ -0,0 +1,251 @@
+package HammingCoding.HammingModules;
+
+import java.util.Arrays;
+
+/**
+ * Works out the expected success rate of a Hamming process exactly, without any random numbers, from the two
+ * state Markov chain that the burst error models simulate. In the chain a bit sent in the bad state is flipped
+ * with the probability of an error, a bit sent in the good state never is, and after each bit the state changes
+ * with the probability of going from one state to the other.
+ *
+ * The rows of an interleaving table are sent one bit from each row at a time, so consecutive bits of a codeword
+ * are the height of the table apart, and the chain takes that many steps between them. For each codeword a
+ * forward and a backward pass of dynamic programming over the state of the chain and the syndrome built up so
+ * far give, for every data bit, the probability that the bit is left wrong after single error correction: that
+ * is, when exactly one of "the bit has an error" and "the syndrome points at the bit" holds.
+ * The expectations are linear in the state the chain is in when a codeword starts, so they are only worked out
+ * for starting in each of the two states, and then weighted by the chance of being in each state at the start
+ * of every row of every table sent over the process.
+ */
+public class MarkovChainEvaluator {
+
+    /**
+     * The largest 'r' value that can be evaluated, as the passes keep a probability for every syndrome at every
+     * bit of a codeword.
+     */
+    public static final int MAX_VALUE = 10;
+
+    /**
+     * The indices of the two states of the chain.
+     */
+    private static final int GOOD = 0, BAD = 1;
+
+    /**
+     * The length of each codeword and the number of syndromes.
+     */
+    private final int wordLength, syndromeCount;
+
+    /**
+     * The number of data bits in each codeword.
+     */
+    private final int dimension;
+
+    public MarkovChainEvaluator(int val) {
+
+        if(val < 2 || val > MAX_VALUE)
+            throw new IllegalArgumentException("Exact evaluation needs an r value from 2 to " + MAX_VALUE + " : " + val);
+
+        this.syndromeCount = 1 << val;
+        this.wordLength = this.syndromeCount - 1;
+        this.dimension = this.wordLength - val;
+    }
+
+    /**
+     * Works out the expected success rate of a Hamming process, where the error model starts in the good state and
+     * keeps its state from one table to the next, as it does over the iterations of a simulation.
+     * @param pOfError The probability that a bit is flipped while the error model is in a bad state.
+     * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
+     * @param pOfBadToGood The probability that while being in a bad state that the model flips into a good state.
+     * @param interleaveHeight The height of the interleaving table to be used.
+     * @param numberOfIterations The number of tables sent.
+     * @return The expected success rate as a percentage.
+     */
+    public double getSuccessRate(double pOfError, double pOfGoodToBad, double pOfBadToGood, int interleaveHeight, int numberOfIterations) {
+
+        //the expected number of data bits left wrong in a codeword when it starts in each state
+        double[] residualErrors = this.getResidualErrors(pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight);
+
+        //the number of bits sent in a table
+        long tableBits = (long) interleaveHeight * this.wordLength;
+
+        //the probability of being in the bad state at the start of the current table and at the start of the current row
+        double tableBad = 0.0, rowBad;
+
+        //the expected number of data bits left wrong over the whole process
+        double expectedErrors = 0.0;
+
+        for(int i = 0; i < numberOfIterations; i++) {
+
+            rowBad = tableBad;
+
+            //the first bit of each row is sent one bit after the first bit of the row above it
+            for(int row = 0; row < interleaveHeight; row++) {
+                expectedErrors += (1.0 - rowBad) * residualErrors[GOOD] + rowBad * residualErrors[BAD];
+                rowBad = advance(rowBad, 1, pOfGoodToBad, pOfBadToGood);
+            }
+
+            tableBad = advance(tableBad, tableBits, pOfGoodToBad, pOfBadToGood);
+        }
+
+        return (1.0 - expectedErrors / ((double) numberOfIterations * interleaveHeight * this.dimension)) * 100;
+    }
+
+    /**
+     * Works out the expected number of data bits left wrong after correcting a single codeword of an interleaved
+     * table, for each state the chain can be in when the first bit of the codeword is sent.
+     * @param pOfError The probability that a bit is flipped while the error model is in a bad state.
+     * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
+     * @param pOfBadToGood The probability that while being in a bad state that the model flips into a good state.
+     * @param interleaveHeight The height of the interleaving table, which is the number of steps between bits of a codeword.
+     * @return The expected number of data bits left wrong, indexed by the starting state.
+     */
+    public double[] getResidualErrors(double pOfError, double pOfGoodToBad, double pOfBadToGood, int interleaveHeight) {
+
+        //the probability of being in each state the height of the table after being in each state
+        double[][] transitions = new double[2][2];
+        transitions[GOOD][BAD] = advance(0.0, interleaveHeight, pOfGoodToBad, pOfBadToGood);
+        transitions[GOOD][GOOD] = 1.0 - transitions[GOOD][BAD];
+        transitions[BAD][BAD] = advance(1.0, interleaveHeight, pOfGoodToBad, pOfBadToGood);
+        transitions[BAD][GOOD] = 1.0 - transitions[BAD][BAD];
+
+        //the probability of a bit being flipped in each state
+        double[] errorProbability = {0.0, pOfError};
+
+        //backward[position][state][syndrome] is the probability that the bits from the position to the end of the
+        //codeword add the syndrome, given the state when the bit at the position is sent
+        double[][][] backward = new double[this.wordLength + 1][2][this.syndromeCount];
+        backward[this.wordLength][GOOD][0] = 1.0;
+        backward[this.wordLength][BAD][0] = 1.0;
+
+        for(int position = this.wordLength - 1; position >= 0; position--) {
+
+            //the syndrome a single error at this position gives
+            int column = position + 1;
+
+            for(int state = GOOD; state <= BAD; state++) {
+
+                double[] result = backward[position][state];
+
+                for(int next = GOOD; next <= BAD; next++) {
+
+                    double step = transitions[state][next];
+                    double[] after = backward[position + 1][next];
+
+                    for(int syndrome = 0; syndrome < this.syndromeCount; syndrome++) {
+                        result[syndrome] += step * ((1.0 - errorProbability[state]) * after[syndrome]
+                                + errorProbability[state] * after[syndrome ^ column]);
+                    }
+                }
+            }
+        }
+
+        double[] residualErrors = new double[2];
+
+        for(int start = GOOD; start <= BAD; start++)
+            residualErrors[start] = this.getResidualErrors(start, transitions, errorProbability, backward);
+
+        return residualErrors;
+    }
+
+    /**
+     * Runs the forward pass over a codeword that starts in the given state, adding up the probability of each
+     * data bit being left wrong using the backward pass.
+     * @param start The state when the first bit of the codeword is sent.
+     * @param transitions The probability of being in each state a table height of steps after being in each state.
+     * @param errorProbability The probability of a bit being flipped in each state.
+     * @param backward The backward pass over the codeword.
+     * @return The expected number of data bits left wrong.
+     */
+    private double getResidualErrors(int start, double[][] transitions, double[] errorProbability, double[][][] backward) {
+
+        //forward[state][syndrome] is the probability of being in the state when the bit at the current position
+        //is sent, with the bits before it having added the syndrome
+        double[][] forward = new double[2][this.syndromeCount], nextForward = new double[2][this.syndromeCount];
+        forward[start][0] = 1.0;
+
+        double residualErrors = 0.0;
+
+        for(int position = 0; position < this.wordLength; position++) {
+
+            int column = position + 1;
+
+            if(!HammingCode.isParityPosition(position)) {
+
+                //the probability that the bit has an error, that the syndrome of the whole codeword points at it,
+                //and that both happen, which cancel out when the bit is corrected
+                double flipped = 0.0, pointedAt = 0.0, both = 0.0;
+
+                for(int state = GOOD; state <= BAD; state++) {
+                    for(int next = GOOD; next <= BAD; next++) {
+
+                        double step = transitions[state][next];
+                        double[] after = backward[position + 1][next];
+
+                        for(int syndrome = 0; syndrome < this.syndromeCount; syndrome++) {
+
+                            double before = forward[state][syndrome] * step;
+
+                            if(before == 0.0)
+                                continue;
+
+                            //the rest of the codeword has to add the syndrome that makes the whole syndrome the column
+                            double withError = before * errorProbability[state], withoutError = before - withError;
+
+                            flipped += withError;
+                            both += withError * after[syndrome];
+                            pointedAt += withError * after[syndrome] + withoutError * after[syndrome ^ column];
+                        }
+                    }
+                }
+
+                residualErrors += flipped + pointedAt - 2 * both;
+            }
+
+            //move the forward pass on past this bit
+            for(int next = GOOD; next <= BAD; next++)
+                Arrays.fill(nextForward[next], 0.0);
+
+            for(int state = GOOD; state <= BAD; state++) {
+                for(int next = GOOD; next <= BAD; next++) {
+
+                    double step = transitions[state][next];
+
+                    for(int syndrome = 0; syndrome < this.syndromeCount; syndrome++) {
+
+                        double before = forward[state][syndrome] * step;
+
+                        nextForward[next][syndrome] += before * (1.0 - errorProbability[state]);
+                        nextForward[next][syndrome ^ column] += before * errorProbability[state];
+                    }
+                }
+            }
+
+            double[][] swap = forward;
+            forward = nextForward;
+            nextForward = swap;
+        }
+
+        return residualErrors;
+    }
+
+    /**
+     * Moves the chain on by a number of steps.
+     * @param bad The probability of being in the bad state.
+     * @param steps The number of steps to take.
+     * @param pOfGoodToBad The probability of going from the good state to the bad state in one step.
+     * @param pOfBadToGood The probability of going from the bad state to the good state in one step.
+     * @return The probability of being in the bad state after the steps.
+     */
+    private static double advance(double bad, long steps, double pOfGoodToBad, double pOfBadToGood) {
+
+        double leaving = pOfGoodToBad + pOfBadToGood;
+
+        if(leaving == 0.0)
+            return bad;
+
+        //the chain approaches its stationary distribution geometrically, by a factor of 1 - leaving each step
+        double stationary = pOfGoodToBad / leaving;
+
+        return stationary + (bad - stationary) * Math.pow(1.0 - leaving, steps);
+    }
+}
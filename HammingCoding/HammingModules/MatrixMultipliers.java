@@ -0,0 +1,68 @@
+package HammingCoding.HammingModules;
+
+/**
+ * Chooses between the scalar and vector matrix multipliers. The vector multiplier is only used when the
+ * jdk.incubator.vector module has been added to the running JVM, and otherwise the scalar one is used.
+ */
+public final class MatrixMultipliers {
+
+    /**
+     * The smallest number of longs in a row for which the vector multiplier is chosen.
+     * Rows of a single long gain nothing from vectors.
+     */
+    private static final int VECTOR_MIN_ROW_LONGS = 2;
+
+    private static final IMatrixMultiplier SCALAR = new ScalarMatrixMultiplier();
+
+    /**
+     * The vector multiplier, or null if the Vector API is not available.
+     */
+    private static final IMatrixMultiplier VECTOR = loadVectorMultiplier();
+
+    private MatrixMultipliers() {
+    }
+
+    /**
+     * Tries to load the vector multiplier, which fails with a linkage error if the incubator module
+     * was not added when the JVM was started.
+     * @return The vector multiplier, or null if it cannot be loaded.
+     */
+    private static IMatrixMultiplier loadVectorMultiplier() {
+        try {
+            IMatrixMultiplier multiplier = (IMatrixMultiplier) Class.forName("HammingCoding.HammingModules.VectorMatrixMultiplier")
+                    .getDeclaredConstructor().newInstance();
+
+            //run it once so that any missing module is found here rather than in the middle of a run
+            multiplier.multiplyRows(new long[][] {{1L, 1L}}, 0, 1, new long[] {1L, 0L});
+
+            return multiplier;
+        } catch(ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    public static IMatrixMultiplier scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * Gives the vector multiplier if it is available.
+     * @return The vector multiplier, or the scalar multiplier if the Vector API is not available.
+     */
+    public static IMatrixMultiplier vector() {
+        return VECTOR != null ? VECTOR : SCALAR;
+    }
+
+    public static boolean isVectorAvailable() {
+        return VECTOR != null;
+    }
+
+    /**
+     * Chooses the multiplier to use for rows of the given length.
+     * @param rowLongs The number of longs in each row.
+     * @return The vector multiplier for long enough rows when it is available, otherwise the scalar one.
+     */
+    public static IMatrixMultiplier forRowLongs(int rowLongs) {
+        return rowLongs >= VECTOR_MIN_ROW_LONGS ? vector() : SCALAR;
+    }
+}
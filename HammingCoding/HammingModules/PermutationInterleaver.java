@@ -0,0 +1,228 @@
+package HammingCoding.HammingModules;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A pseudo-random interleaver, which sends the bits of a table in the order of a fixed permutation rather than
+ * column by column, so that bursts with a period that lines up with the table are not lined up with codewords.
+ * The permutation is an S-random one: it is drawn a bit at a time, and each bit must come from a different
+ * codeword to the spread's worth of bits sent before it, so a burst shorter than the spread never hits the same
+ * codeword twice. The spread is half the height of the table, which leaves the order codewords are sent in free
+ * to vary while being half as far as a block interleaver spreads them.
+ *
+ * Permutations are drawn from a fixed seed and never change once built, so the one held in the registry for
+ * each size of table is shared by every iteration and every thread, along with its inverse.
+ */
+public final class PermutationInterleaver implements IInterleaver {
+
+    /**
+     * The seed every permutation is drawn from, so that the same table always gets the same permutation.
+     */
+    private static final long SEED = 0x5EED_1E4FL;
+
+    /**
+     * The shared interleaver for each size of table that has been asked for so far, keyed by the height and the word length.
+     */
+    private static final ConcurrentHashMap<Long, PermutationInterleaver> REGISTRY = new ConcurrentHashMap<>();
+
+    /**
+     * The height of the table and the word length for the width of the table.
+     */
+    private final int height, wordLength;
+
+    /**
+     * The smallest number of bits sent between two bits of the same codeword in the drawn permutation, which is at
+     * least the spread it was drawn for.
+     */
+    private final int spread;
+
+    /**
+     * The position in the table, row by row, of the bit sent at each position of the stream.
+     */
+    private final int[] permutation;
+
+    /**
+     * The position in the stream that each bit of the table, row by row, is sent at.
+     */
+    private final int[] inverse;
+
+    private PermutationInterleaver(int height, int wordLength) {
+
+        this.height = height;
+        this.wordLength = wordLength;
+
+        this.permutation = this.draw(targetSpreadFor(height), new SplittableRandom(SEED));
+        this.inverse = new int[this.permutation.length];
+
+        for(int position = 0; position < this.permutation.length; position++)
+            this.inverse[this.permutation[position]] = position;
+
+        this.spread = this.measureSpread();
+    }
+
+    /**
+     * Gives the spread the permutation of a table is drawn for, which is half its height.
+     * @param height The height of the table.
+     * @return The smallest number of bits to send between two bits of the same codeword.
+     */
+    public static int targetSpreadFor(int height) {
+        return Math.max(1, height / 2);
+    }
+
+    /**
+     * Gives the shared interleaver for a size of table, drawing its permutation the first time it is asked for.
+     * @param height The height of the table.
+     * @param wordLength The word length for the width of the table.
+     * @return The interleaver for that size of table.
+     */
+    public static PermutationInterleaver forTable(int height, int wordLength) {
+        return REGISTRY.computeIfAbsent(((long) height << 32) | wordLength, key -> new PermutationInterleaver(height, wordLength));
+    }
+
+    /**
+     * Draws an S-random permutation of the table. Each bit sent is drawn by picking one of the codewords that can
+     * be sent next, at random from those with the most bits left, and then one of its bits that are left at random.
+     * Always draining the codewords with the most bits left first means the drawing never gets stuck for a spread
+     * up to the height of the table, as every codeword is then sent again before any other is sent twice more.
+     * @param spread The smallest number of bits to send between two bits of the same codeword.
+     * @param randomGen The generator of the random numbers.
+     * @return The permutation.
+     */
+    private int[] draw(int spread, SplittableRandom randomGen) {
+
+        int size = this.height * this.wordLength;
+        int[] result = new int[size], rowRemaining = new int[this.height], lastSent = new int[this.height];
+        int[][] rowColumns = new int[this.height][this.wordLength];
+
+        for(int row = 0; row < this.height; row++) {
+            rowRemaining[row] = this.wordLength;
+            lastSent[row] = -spread;
+            for(int column = 0; column < this.wordLength; column++)
+                rowColumns[row][column] = column;
+        }
+
+        for(int position = 0; position < size; position++) {
+
+            //the most bits left in a codeword that can be sent next, and how many codewords have that many
+            int most = 0, ties = 0;
+
+            for(int row = 0; row < this.height; row++) {
+                if(position - lastSent[row] >= spread) {
+                    if(rowRemaining[row] > most) {
+                        most = rowRemaining[row];
+                        ties = 1;
+                    } else if(rowRemaining[row] == most)
+                        ties++;
+                }
+            }
+
+            //pick one of the tied codewords at random
+            int pick = randomGen.nextInt(ties), row = -1;
+
+            while(pick >= 0) {
+                row++;
+                if(position - lastSent[row] >= spread && rowRemaining[row] == most)
+                    pick--;
+            }
+
+            int index = randomGen.nextInt(rowRemaining[row]);
+
+            result[position] = row * this.wordLength + rowColumns[row][index];
+            rowColumns[row][index] = rowColumns[row][--rowRemaining[row]];
+            lastSent[row] = position;
+        }
+
+        return result;
+    }
+
+    /**
+     * Works out the spread the drawn permutation achieves, from the positions each codeword's bits are sent at.
+     * @return The smallest number of bits sent between two bits of the same codeword, or the size of the table if
+     *         no codeword has two bits.
+     */
+    private int measureSpread() {
+
+        int size = this.permutation.length, result = size;
+        int[] lastSent = new int[this.height];
+
+        Arrays.fill(lastSent, -size);
+
+        for(int position = 0; position < size; position++) {
+            int row = this.permutation[position] / this.wordLength;
+            result = Math.min(result, position - lastSent[row]);
+            lastSent[row] = position;
+        }
+
+        return result;
+    }
+
+    public String encode(String strToEncode) {
+
+        char[] result = new char[this.permutation.length];
+
+        for(int position = 0; position < result.length; position++)
+            result[position] = strToEncode.charAt(this.permutation[position]);
+
+        return new String(result);
+    }
+
+    public String decode(String strToDecode) {
+
+        char[] result = new char[this.permutation.length];
+
+        for(int position = 0; position < result.length; position++)
+            result[this.permutation[position]] = strToDecode.charAt(position);
+
+        return new String(result);
+    }
+
+    public void encodePacked(long[] table, long[] stream) {
+        scatter(table, stream, this.inverse);
+    }
+
+    public void decodePacked(long[] stream, long[] table) {
+        scatter(stream, table, this.permutation);
+    }
+
+    /**
+     * Moves every set bit of one packed array to the position the map gives for it in another, so that only the
+     * bits that are set cost anything.
+     * @param src The packed bits to move.
+     * @param dest The array to write the moved bits into, which is cleared first.
+     * @param map The position in the destination of each bit of the source.
+     */
+    private static void scatter(long[] src, long[] dest, int[] map) {
+
+        Arrays.fill(dest, 0L);
+
+        for(int word = 0; word < src.length && word << 6 < map.length; word++) {
+
+            //the bits past the end of the table are left behind
+            long bits = (word + 1) << 6 > map.length ? src[word] & ((1L << (map.length & 63)) - 1) : src[word];
+
+            while(bits != 0L) {
+                BitPacking.setBit(dest, map[(word << 6) + Long.numberOfTrailingZeros(bits)]);
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * Gives the position in the table, row by row, of the bit sent at a position of the stream.
+     * @param position The position in the stream.
+     * @return The position in the table.
+     */
+    public int tablePositionOf(int position) {
+        return this.permutation[position];
+    }
+
+    /**
+     * Gives the spread the drawn permutation achieves, which is the burst length it is guaranteed to spread out.
+     * @return The smallest number of bits sent between two bits of the same codeword.
+     */
+    public int getSpread() {
+        return spread;
+    }
+}
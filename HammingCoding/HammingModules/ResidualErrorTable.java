@@ -0,0 +1,115 @@
+package HammingCoding.HammingModules;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The number of data bits left wrong after single error correction for every possible error pattern of a
+ * codeword, for codes short enough to list them all. As Hamming codes are linear, this only depends on the
+ * error pattern, so a received table can be scored with one lookup per codeword instead of decoding it.
+ * Tables never change once built, so the one held in the registry for each r is shared by every thread.
+ */
+public final class ResidualErrorTable {
+
+    /**
+     * The largest r a table is built for, giving 2^15 patterns of 15 bit codewords.
+     */
+    public static final int MAX_VALUE = 4;
+
+    /**
+     * The shared table for each value of r that has been asked for so far.
+     */
+    private static final ConcurrentHashMap<Integer, ResidualErrorTable> REGISTRY = new ConcurrentHashMap<>();
+
+    /**
+     * The length of each codeword.
+     */
+    private final int wordLength;
+
+    /**
+     * The number of data bits left wrong, indexed by the error pattern with bit i set for an error at position i.
+     */
+    private final byte[] residualErrors;
+
+    private ResidualErrorTable(HammingCode code) {
+
+        //the patterns are corrected and decoded with the single long methods of the code
+        if(!code.fitsInLong())
+            throw new IllegalArgumentException("Residual error tables are only built for codes whose codewords fit in a single long.");
+
+        this.wordLength = code.getWordLength();
+        this.residualErrors = new byte[1 << this.wordLength];
+
+        //decoding the corrected error pattern gives exactly the data bits that would be left wrong
+        for(int pattern = 0; pattern < this.residualErrors.length; pattern++)
+            this.residualErrors[pattern] = (byte) Long.bitCount(code.decode(code.correct(pattern)));
+    }
+
+    /**
+     * Checks whether a table can be built for a value of r.
+     * @param val The 'r' value of the code.
+     * @return True if r is small enough.
+     */
+    public static boolean isAvailable(int val) {
+        return val >= 2 && val <= MAX_VALUE;
+    }
+
+    /**
+     * Gives the shared table for a value of r, building it the first time it is asked for.
+     * @param val The 'r' value of the code, from 2 up to {@link #MAX_VALUE}.
+     * @return The table for that value of r.
+     */
+    public static ResidualErrorTable forValue(int val) {
+
+        if(!isAvailable(val))
+            throw new IllegalArgumentException("Residual error tables are only built for r from 2 to " + MAX_VALUE + " : " + val);
+
+        return REGISTRY.computeIfAbsent(val, v -> new ResidualErrorTable(HammingCode.forValue(v)));
+    }
+
+    /**
+     * Gives the number of data bits left wrong after correcting a codeword with the given error pattern.
+     * @param pattern The error pattern, with bit i set for an error at position i.
+     * @return The number of data bits left wrong.
+     */
+    public int getResidualErrors(int pattern) {
+        return this.residualErrors[pattern];
+    }
+
+    /**
+     * Scores a whole interleaved table from its error pattern, in the order its bits are transmitted.
+     * @param stream The packed error pattern of the table.
+     * @param interleaveHeight The height of the table.
+     * @param patterns An array of at least the height of the table to gather the pattern of each row into.
+     * @return The number of data bits left wrong in the whole table.
+     */
+    public int countResidualErrors(long[] stream, int interleaveHeight, int[] patterns) {
+
+        for(int row = 0; row < interleaveHeight; row++)
+            patterns[row] = 0;
+
+        //each column of the table is a run of height bits in the stream, which is read 64 rows at a time
+        //so that only the rows with an error in the column need to be visited
+        for(int column = 0; column < this.wordLength; column++) {
+            for(int base = 0; base < interleaveHeight; base += 64) {
+
+                long errors = BitPacking.readBits(stream, column * interleaveHeight + base, Math.min(64, interleaveHeight - base));
+
+                while(errors != 0L) {
+                    patterns[base + Long.numberOfTrailingZeros(errors)] |= 1 << column;
+                    errors &= errors - 1;
+                }
+            }
+        }
+
+        int errorCount = 0;
+
+        for(int row = 0; row < interleaveHeight; row++)
+            errorCount += this.residualErrors[patterns[row]];
+
+        return errorCount;
+    }
+
+    public int getWordLength() {
+        return wordLength;
+    }
+}
@@ -0,0 +1,27 @@
+package HammingCoding.HammingModules;
+
+/**
+ * Multiplies packed rows by a packed word one long at a time.
+ */
+public class ScalarMatrixMultiplier implements IMatrixMultiplier {
+
+    public long multiplyRows(long[][] matrix, int fromRow, int rows, long[] word) {
+
+        long result = 0L;
+
+        for(int i = 0; i < rows; i++) {
+
+            long[] row = matrix[fromRow + i];
+
+            //the parity of the XOR of each pair of longs is the parity of the whole product
+            long sum = 0L;
+
+            for(int j = 0; j < row.length; j++)
+                sum ^= row[j] & word[j];
+
+            result |= (long) (Long.bitCount(sum) & 1) << i;
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+package HammingCoding.HammingModules;
+
+/**
+ * The ways that a Hamming manager can simulate transmissions, each selected on the command line by its name.
+ */
+public enum SimulationMode {
+
+    /**
+     * Encodes random words from the channel, interleaves them, puts errors in them and decodes them again.
+     */
+    FULL("full"),
+
+    /**
+     * Since Hamming codes are linear, whether a word is decoded correctly only depends on its error pattern.
+     * This sends only the error patterns through the interleaver and decoder, as if every codeword were all 0s,
+     * and counts the data bits left wrong after correction.
+     */
+    ERROR_PATTERN("errors"),
+
+    /**
+     * Like the error pattern mode, but for r values up to {@link ResidualErrorTable#MAX_VALUE} each codeword is
+     * scored with a lookup in a table of the errors left for every error pattern, instead of being decoded.
+     */
+    LOOKUP("lookup"),
+
+    /**
+     * Like the error pattern mode, but the error model gives the positions of the errors rather than a mask,
+     * and only the codewords with an error are corrected, so that low error rates are fast to simulate.
+     */
+    SPARSE("sparse"),
+
+    /**
+     * Works out the expected success rate exactly from the Markov chain of the burst error model,
+     * without simulating any transmissions, for r values up to {@link MarkovChainEvaluator#MAX_VALUE}.
+     */
+    EXACT("exact"),
+
+    /**
+     * Like the error pattern mode, but with importance sampling of the burst error model, so that tables with
+     * decoding failures are drawn far more often and weighted by how much more likely they were made. This gives
+     * tight estimates of the long run success rate where failures are too rare for plain simulation to see.
+     */
+    IMPORTANCE("importance");
+
+    /**
+     * The name of the mode on the command line.
+     */
+    private final String name;
+
+    SimulationMode(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Finds the mode with the given command line name.
+     * @param name The name of the mode.
+     * @return The mode with that name.
+     */
+    public static SimulationMode fromName(String name) {
+
+        for(SimulationMode mode : values()) {
+            if(mode.name.equals(name))
+                return mode;
+        }
+
+        throw new IllegalArgumentException("Unknown simulation mode : " + name);
+    }
+}
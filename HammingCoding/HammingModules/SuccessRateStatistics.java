@@ -0,0 +1,165 @@
+package HammingCoding.HammingModules;
+
+/**
+ * Keeps the running success rate of the iterations of a process along with its variance, so that a confidence
+ * interval for the success rate can be given at any point. The variance is that of the success rates of the
+ * individual iterations, which is updated with Welford's method as each iteration is added.
+ * Iterations can be weighted by a likelihood ratio when they were simulated with importance sampling, in which
+ * case their errors count towards the success rate multiplied by their weight.
+ */
+public class SuccessRateStatistics {
+
+    /**
+     * The number of standard errors either side of the mean covered by a 95% confidence interval.
+     */
+    public static final double Z_95 = 1.959964;
+
+    /**
+     * The number of iterations added so far.
+     */
+    private long iterations;
+
+    /**
+     * The total number of errors left after decoding and the total number of data bits transferred.
+     */
+    private long errorCount, bitCount;
+
+    /**
+     * The total of the errors of each iteration multiplied by its weight.
+     */
+    private double weightedErrorCount;
+
+    /**
+     * The total of the squares of the weighted errors of each iteration.
+     */
+    private double weightedErrorSquares;
+
+    /**
+     * The mean success rate of the iterations and the sum of the squared differences from it.
+     */
+    private double mean, sumOfSquares;
+
+    /**
+     * Clears the statistics before the iterations of a new process are added.
+     */
+    public void reset() {
+        this.iterations = 0;
+        this.errorCount = 0;
+        this.bitCount = 0;
+        this.weightedErrorCount = 0.0;
+        this.weightedErrorSquares = 0.0;
+        this.mean = 0.0;
+        this.sumOfSquares = 0.0;
+    }
+
+    /**
+     * Adds the result of an iteration.
+     * @param errors The number of errors left after decoding.
+     * @param bits The number of data bits transferred.
+     */
+    public void add(long errors, long bits) {
+        this.add(errors, 1.0, bits);
+    }
+
+    /**
+     * Adds the result of an iteration simulated with importance sampling.
+     * @param errors The number of errors left after decoding.
+     * @param weight The likelihood ratio of the iteration, which its errors are multiplied by.
+     * @param bits The number of data bits transferred.
+     */
+    public void add(long errors, double weight, long bits) {
+
+        //the errors of this iteration counted by their weight, and the success rate of this iteration alone
+        double weightedErrors = errors == 0 ? 0.0 : errors * weight;
+        double rate = 100.0 * (bits - weightedErrors) / bits;
+        double delta = rate - this.mean;
+
+        this.iterations++;
+        this.errorCount += errors;
+        this.weightedErrorCount += weightedErrors;
+        this.weightedErrorSquares += weightedErrors * weightedErrors;
+        this.bitCount += bits;
+
+        this.mean += delta / this.iterations;
+        this.sumOfSquares += delta * (rate - this.mean);
+    }
+
+    /**
+     * Adds the iterations of other statistics to these, as if they had all been added here. This lets iterations
+     * run on separate threads keep their own statistics and only combine them at the end.
+     * @param other The statistics to add.
+     */
+    public void merge(SuccessRateStatistics other) {
+
+        if(other.iterations == 0)
+            return;
+
+        long total = this.iterations + other.iterations;
+
+        //the means and the sums of squares are combined with the parallel form of Welford's method
+        double delta = other.mean - this.mean;
+
+        this.mean += delta * other.iterations / total;
+        this.sumOfSquares += other.sumOfSquares + delta * delta * ((double) this.iterations * other.iterations / total);
+
+        this.iterations = total;
+        this.errorCount += other.errorCount;
+        this.weightedErrorCount += other.weightedErrorCount;
+        this.weightedErrorSquares += other.weightedErrorSquares;
+        this.bitCount += other.bitCount;
+    }
+
+    /**
+     * Gives the success rate over all the bits transferred so far.
+     * @return The success rate as a percentage.
+     */
+    public double getSuccessRate() {
+        return ((this.bitCount - this.weightedErrorCount) / this.bitCount) * 100;
+    }
+
+    /**
+     * Gives the half width of the 95% confidence interval of the success rate. While no errors have been seen
+     * the variance is zero, so the rule of three is used instead. The bits of an iteration are far from independent
+     * under burst errors, so it is applied to the iterations: at most 3 in every so many iterations could have
+     * failed unseen, and even a failure that lost every bit only takes 100 percentage points from the rate, giving
+     * an interval from 100 - 300 / iterations to 100.
+     * @return The half width of the interval in percentage points, or infinity before there are two iterations.
+     */
+    public double getIntervalHalfWidth() {
+
+        if(this.iterations < 2)
+            return Double.POSITIVE_INFINITY;
+
+        if(this.errorCount == 0)
+            return 150.0 / this.iterations;
+
+        return Z_95 * Math.sqrt(this.sumOfSquares / (this.iterations - 1) / this.iterations);
+    }
+
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Gives the number of errors seen, without any weights, which is how many error events the estimate is based on.
+     * @return The number of errors.
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Gives the number of iterations with errors that the estimate is effectively based on, which is the Kish
+     * effective sample size of the weighted errors of the iterations. Iterations whose errors are all alike count
+     * once each, while errors that come in large clumps, or whose weights are dominated by a few huge ones or
+     * have all but vanished, count for far fewer.
+     * @return The effective number of iterations with errors, which is 0 if none have been seen or their weights are all 0.
+     */
+    public double getEffectiveErrorEvents() {
+
+        if(this.weightedErrorSquares == 0.0)
+            return 0.0;
+
+        return this.weightedErrorCount * this.weightedErrorCount / this.weightedErrorSquares;
+    }
+}
@@ -0,0 +1,125 @@
+package HammingCoding.HammingModules;
+
+import HammingCoding.ErrorModels.ErrorModelType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the Hamming processes of a sweep over many configurations in parallel on a work-stealing pool.
+ * Each process is an independent task, and every worker thread has its own Hamming manager, so the encoder,
+ * decoder and error model of a task are never shared with another task running at the same time.
+ * The results are output in the order the processes were submitted, so the output is laid out exactly
+ * as if the processes had been run one after another.
+ * Every process is given its own random number stream, split in submission order from one generator seeded
+ * with a master seed, so the same seed gives the same results whatever the number of threads.
+ */
+public class SweepExecutor {
+
+    /**
+     * The work-stealing pool the processes are run on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The Hamming manager of each worker thread, which keeps its encoder and decoder between the
+     * tasks run on that thread for as long as the 'r' value and interleave height stay the same.
+     */
+    private final ThreadLocal<HammingManager> managers;
+
+    /**
+     * The generator the random number stream of each process is split from as it is submitted.
+     */
+    private final SplittableRandom masterRandom;
+
+    /**
+     * The text of every submitted process and every piece of text in between, in the order they were submitted.
+     */
+    private final List<Future<String>> results = new ArrayList<>();
+
+    /**
+     * Creates a sweep executor.
+     * @param parallelism The number of worker threads.
+     * @param mode The way transmissions are simulated in every process.
+     * @param errorModelType The error model every process simulates transmissions with.
+     * @param interleaverType The interleaver every process spreads the bits of its codewords out with.
+     * @param seed The master seed the random number streams of all the processes are made from.
+     * @param stopping Decides how many iterations each process runs, or null to run the number each is given.
+     */
+    public SweepExecutor(int parallelism, SimulationMode mode, ErrorModelType errorModelType, InterleaverType interleaverType, long seed, AdaptiveStopping stopping) {
+
+        this.pool = new ForkJoinPool(parallelism);
+        this.masterRandom = new SplittableRandom(seed);
+
+        this.managers = ThreadLocal.withInitial(() -> {
+            HammingManager hm = new HammingManager();
+            hm.setSimulationMode(mode);
+            hm.setErrorModelType(errorModelType);
+            hm.setInterleaverType(interleaverType);
+            hm.setStopping(stopping);
+            return hm;
+        });
+    }
+
+    /**
+     * Submits a Hamming process to be run by the pool, taking the same arguments as
+     * {@link HammingManager#doHammingProcess}. The output type must not be "-o", as the words
+     * at every stage would be output from the worker threads out of order.
+     * @param val The 'r' value needed to calculate the word length and the dimension.
+     * @param pOfError The probability that a bit is flipped while the error model is in a bad state.
+     * @param pOfGoodToBad The probability that while being in a good state that the model flips into a bad state.
+     * @param pOfBadToGood The probability that while being in a bad state that the model flips into a good state.
+     * @param interleaveHeight The height of the interleaving table to be used.
+     * @param outputType The type of output for the result.
+     * @param numberOfIterations The number of iterations to run.
+     */
+    public void submit(int val, double pOfError, double pOfGoodToBad, double pOfBadToGood, int interleaveHeight, String outputType, int numberOfIterations) {
+
+        if(outputType.equals("-o"))
+            throw new IllegalArgumentException("The \"-o\" output type cannot be run in a sweep.");
+
+        //the stream is split here rather than in the task, so that it only depends on the order of submission
+        SplittableRandom processRandom = this.masterRandom.split();
+
+        this.results.add(this.pool.submit(() -> {
+            HammingManager hm = this.managers.get();
+            hm.setRandomGenerator(processRandom);
+            return hm.runHammingProcess(val, pOfError, pOfGoodToBad, pOfBadToGood, interleaveHeight, outputType, numberOfIterations);
+        }));
+    }
+
+    /**
+     * Adds text to be output between the results of the processes submitted before and after it.
+     * @param text The text to output.
+     */
+    public void submitText(String text) {
+        this.results.add(CompletableFuture.completedFuture(text));
+    }
+
+    /**
+     * Outputs the results of everything submitted in the order it was submitted, waiting for each process
+     * to finish in turn, and then shuts down the pool.
+     */
+    public void outputResults() {
+
+        try {
+            for(Future<String> result : this.results)
+                System.out.print(result.get());
+
+            System.out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the sweep to finish.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A process in the sweep failed.", e.getCause());
+        } finally {
+            this.results.clear();
+            this.pool.shutdownNow();
+        }
+    }
+}
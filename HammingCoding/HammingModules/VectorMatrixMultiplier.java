@@ -0,0 +1,104 @@
+package HammingCoding.HammingModules;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Multiplies packed rows by a packed word with the Java Vector API, ANDing whole vectors of longs at once
+ * and folding the lanes together with XOR before taking the parity.
+ * Rows of Hamming matrices for r of 6 and above are 2^(r-6) longs long, so rows of 2 and 4 longs get a
+ * single fixed-size vector each and longer rows are walked with the widest vector the hardware supports.
+ * This class needs the jdk.incubator.vector module, so it should only be loaded through {@link MatrixMultipliers}.
+ */
+class VectorMatrixMultiplier implements IMatrixMultiplier {
+
+    private static final VectorSpecies<Long> SPECIES_128 = LongVector.SPECIES_128;
+
+    private static final VectorSpecies<Long> SPECIES_256 = LongVector.SPECIES_256;
+
+    private static final VectorSpecies<Long> SPECIES_WIDE = LongVector.SPECIES_PREFERRED;
+
+    /**
+     * Multiplies rows one long at a time when they are too short for vectors.
+     */
+    private static final IMatrixMultiplier SCALAR = new ScalarMatrixMultiplier();
+
+    public long multiplyRows(long[][] matrix, int fromRow, int rows, long[] word) {
+
+        //the number of longs in each row
+        int rowLongs = matrix[fromRow].length;
+
+        if(rowLongs == 2)
+            return multiplyRows128(matrix, fromRow, rows, word);
+        else if(rowLongs == 4)
+            return multiplyRows256(matrix, fromRow, rows, word);
+        else if(rowLongs >= SPECIES_WIDE.length())
+            return multiplyRowsWide(matrix, fromRow, rows, word);
+        else
+            return SCALAR.multiplyRows(matrix, fromRow, rows, word);
+    }
+
+    /**
+     * Multiplies rows which are exactly two longs long.
+     */
+    private static long multiplyRows128(long[][] matrix, int fromRow, int rows, long[] word) {
+
+        LongVector wordVector = LongVector.fromArray(SPECIES_128, word, 0);
+        long result = 0L;
+
+        for(int i = 0; i < rows; i++) {
+            long sum = LongVector.fromArray(SPECIES_128, matrix[fromRow + i], 0).and(wordVector).reduceLanes(VectorOperators.XOR);
+            result |= (long) (Long.bitCount(sum) & 1) << i;
+        }
+
+        return result;
+    }
+
+    /**
+     * Multiplies rows which are exactly four longs long.
+     */
+    private static long multiplyRows256(long[][] matrix, int fromRow, int rows, long[] word) {
+
+        LongVector wordVector = LongVector.fromArray(SPECIES_256, word, 0);
+        long result = 0L;
+
+        for(int i = 0; i < rows; i++) {
+            long sum = LongVector.fromArray(SPECIES_256, matrix[fromRow + i], 0).and(wordVector).reduceLanes(VectorOperators.XOR);
+            result |= (long) (Long.bitCount(sum) & 1) << i;
+        }
+
+        return result;
+    }
+
+    /**
+     * Multiplies rows of at least one full vector of the widest shape, accumulating the XOR of each
+     * vector of the row and handling any longs left over at the end one at a time.
+     */
+    private static long multiplyRowsWide(long[][] matrix, int fromRow, int rows, long[] word) {
+
+        int rowLongs = matrix[fromRow].length, upperBound = SPECIES_WIDE.loopBound(rowLongs);
+        long result = 0L;
+
+        for(int i = 0; i < rows; i++) {
+
+            long[] row = matrix[fromRow + i];
+            LongVector sumVector = LongVector.zero(SPECIES_WIDE);
+            long sum;
+            int j = 0;
+
+            for(; j < upperBound; j += SPECIES_WIDE.length())
+                sumVector = sumVector.lanewise(VectorOperators.XOR,
+                        LongVector.fromArray(SPECIES_WIDE, row, j).and(LongVector.fromArray(SPECIES_WIDE, word, j)));
+
+            sum = sumVector.reduceLanes(VectorOperators.XOR);
+
+            for(; j < rowLongs; j++)
+                sum ^= row[j] & word[j];
+
+            result |= (long) (Long.bitCount(sum) & 1) << i;
+        }
+
+        return result;
+    }
+}